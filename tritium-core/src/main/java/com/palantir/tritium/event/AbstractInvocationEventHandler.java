@@ -34,6 +34,7 @@ public abstract class AbstractInvocationEventHandler<C extends InvocationContext
     private static final Logger logger = LoggerFactory.getLogger(AbstractInvocationEventHandler.class);
 
     private static final Object[] NO_ARGS = {};
+    private static final java.util.function.BooleanSupplier ALWAYS_ENABLED = () -> true;
 
     private final java.util.function.BooleanSupplier isEnabledSupplier;
 
@@ -41,7 +42,7 @@ public abstract class AbstractInvocationEventHandler<C extends InvocationContext
      * Always enabled instrumentation handler.
      */
     protected AbstractInvocationEventHandler() {
-        this((java.util.function.BooleanSupplier) () -> true);
+        this(ALWAYS_ENABLED);
     }
 
     /**
@@ -73,6 +74,18 @@ public abstract class AbstractInvocationEventHandler<C extends InvocationContext
         return isEnabledSupplier.getAsBoolean();
     }
 
+    /**
+     * Returns true if this handler's enablement only changes when {@link InstrumentationProperties#reload()} is
+     * called, allowing composite handlers to decide once per reload rather than once per invocation whether to
+     * invoke it.
+     */
+    final boolean isSwitched() {
+        return isEnabledSupplier == ALWAYS_ENABLED
+                || isEnabledSupplier == com.palantir.tritium.api.functions.BooleanSupplier.TRUE
+                || isEnabledSupplier == com.palantir.tritium.api.functions.BooleanSupplier.FALSE
+                || isEnabledSupplier instanceof InstrumentationProperties.SwitchedBooleanSupplier;
+    }
+
     /**
      * Logs debug information if the specified invocation context is not null.
      *
@@ -0,0 +1,104 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event;
+
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import javax.annotation.Nullable;
+
+/**
+ * Support for handlers which time asynchronous methods, i.e. methods returning a {@link CompletionStage} or
+ * {@link ListenableFuture}, whose invocations only complete once the returned future completes.
+ * <p>
+ * Callbacks run on the thread which completes the future, or on the calling thread if it has already completed, so
+ * they must be cheap and must not block.
+ */
+public final class AsyncCompletion {
+
+    private AsyncCompletion() {}
+
+    /** Callback notified when an asynchronous invocation completes. */
+    @FunctionalInterface
+    public interface Callback {
+        /**
+         * Called when the future returned by an invocation completes.
+         *
+         * @param failure cause of failure, or null if the future completed successfully
+         */
+        void onComplete(@Nullable Throwable failure);
+    }
+
+    /**
+     * Returns true if the specified method returns a {@link CompletionStage} or {@link ListenableFuture}. Handlers
+     * should evaluate this once per method rather than once per invocation.
+     *
+     * @param method method to check
+     * @return whether invocations of the method complete asynchronously
+     */
+    public static boolean isAsync(Method method) {
+        Class<?> returnType = checkNotNull(method, "method").getReturnType();
+        return CompletionStage.class.isAssignableFrom(returnType)
+                || ListenableFuture.class.isAssignableFrom(returnType);
+    }
+
+    /**
+     * Calls the specified callback once the specified invocation result completes, if it is a
+     * {@link CompletionStage} or {@link ListenableFuture}.
+     *
+     * @param result result returned by an invocation
+     * @param callback callback to notify on completion
+     * @return true if the callback was registered, or false if the result is not a future, in which case the
+     *         callback is never called
+     */
+    public static boolean whenComplete(@Nullable Object result, Callback callback) {
+        checkNotNull(callback, "callback");
+        if (result instanceof ListenableFuture) {
+            Futures.addCallback((ListenableFuture<?>) result, new FutureCallback<Object>() {
+                @Override
+                public void onSuccess(@Nullable Object value) {
+                    callback.onComplete(null);
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    callback.onComplete(throwable);
+                }
+            }, MoreExecutors.directExecutor());
+            return true;
+        } else if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, throwable) -> callback.onComplete(unwrap(throwable)));
+            return true;
+        }
+        return false;
+    }
+
+    @Nullable
+    private static Throwable unwrap(@Nullable Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
+        }
+        return throwable;
+    }
+
+}
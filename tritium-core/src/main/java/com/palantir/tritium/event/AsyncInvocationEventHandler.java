@@ -0,0 +1,344 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event;
+
+import static com.palantir.logsafe.Preconditions.checkArgument;
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.palantir.logsafe.SafeArg;
+import com.palantir.logsafe.UnsafeArg;
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorates a handler so that its {@link #onSuccess} and {@link #onFailure} callbacks run on a background thread
+ * instead of inside the instrumented invocation.
+ * <p>
+ * The calling thread only records the invocation's instance, method, a copy of its arguments, its result or
+ * failure, and its start and end times into a pre-allocated ring buffer, without locking. A single consumer thread
+ * replays each completed invocation to the delegate, with a context whose start time is adjusted so that durations
+ * measured by the delegate exclude the time spent queued. When the buffer is full the {@link OverflowPolicy} decides
+ * whether the caller drops the event or waits for space, so the overhead on the caller stays bounded whatever the
+ * delegate does.
+ * <p>
+ * Buffered invocations keep their instance, argument values, result and failure reachable until they have been
+ * replayed, so up to {@code bufferSize} of each may be retained while the delegate falls behind. The argument array is
+ * copied, as callers of varargs methods may reuse it once the invocation returns, but the arguments themselves are
+ * not, so the delegate observes their state when it is replayed rather than when the invocation completed.
+ * <p>
+ * The delegate's {@link InvocationEventHandler#preInvocation preInvocation} is never called. Its completion callbacks
+ * instead receive a context created by this handler, which is reused for every replayed invocation. Only handlers
+ * which accept any {@link InvocationContext} and do not retain it, such as the metrics and logging handlers, may be
+ * decorated. Handlers which expect the context returned by their own {@code preInvocation} or keep thread-bound state,
+ * such as tracing, must not be decorated; failures they raise when replayed are logged and otherwise ignored.
+ */
+public final class AsyncInvocationEventHandler implements InvocationEventHandler<InvocationContext>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncInvocationEventHandler.class);
+
+    private static final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("tritium-async-handler-%d")
+            .setDaemon(true)
+            .build();
+
+    /** Number of times an idle consumer yields before parking, to pick up bursts of invocations promptly. */
+    private static final int IDLE_SPINS = 100;
+    private static final long MIN_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+
+    /** Action taken when an invocation completes while the ring buffer is full. */
+    public enum OverflowPolicy {
+        /** Drop the invocation. */
+        DROP,
+        /**
+         * Once the buffer is more than half full, record invocations with a probability proportional to the
+         * remaining capacity, dropping the rest.
+         */
+        SAMPLE,
+        /** Wait for the consumer to free space, bounding memory use at the cost of caller latency. */
+        BLOCK
+    }
+
+    private final InvocationEventHandler<InvocationContext> delegate;
+    private final OverflowPolicy overflowPolicy;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread consumer;
+    private volatile boolean closed;
+
+    private AsyncInvocationEventHandler(
+            InvocationEventHandler<InvocationContext> delegate,
+            int bufferSize,
+            OverflowPolicy overflowPolicy) {
+        this.delegate = delegate;
+        this.overflowPolicy = overflowPolicy;
+        this.slots = new Slot[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            slots[i] = new Slot(i - bufferSize);
+        }
+        this.mask = bufferSize - 1;
+        this.consumer = threadFactory.newThread(this::consume);
+    }
+
+    /**
+     * Returns a handler which runs the specified handler's completion callbacks on a new background thread.
+     *
+     * @param delegate handler to decorate, whose completion callbacks must accept contexts it did not create
+     * @param bufferSize number of pending invocations to buffer, must be a power of two
+     * @param overflowPolicy action taken when the buffer is full
+     * @return asynchronous handler, which must be {@link #close() closed} to stop its thread
+     */
+    public static AsyncInvocationEventHandler of(
+            InvocationEventHandler<InvocationContext> delegate,
+            int bufferSize,
+            OverflowPolicy overflowPolicy) {
+        checkNotNull(delegate, "delegate");
+        checkNotNull(overflowPolicy, "overflowPolicy");
+        checkArgument(bufferSize > 0 && Integer.bitCount(bufferSize) == 1, "bufferSize must be a power of two",
+                SafeArg.of("bufferSize", bufferSize));
+        AsyncInvocationEventHandler handler = new AsyncInvocationEventHandler(delegate, bufferSize, overflowPolicy);
+        handler.consumer.start();
+        return handler;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return !closed && delegate.isEnabled();
+    }
+
+    @Override
+    public InvocationContext preInvocation(@Nonnull Object instance, @Nonnull Method method, @Nonnull Object[] args) {
+        return PooledInvocationContext.of(instance, method, args);
+    }
+
+    @Override
+    public void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
+        publish(context, result, null);
+    }
+
+    @Override
+    public void onFailure(@Nullable InvocationContext context, @Nonnull Throwable cause) {
+        publish(context, null, cause);
+    }
+
+    /** Returns the number of invocations dropped because the buffer was full. */
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /** Returns the number of invocations waiting to be passed to the delegate. */
+    public long getPendingEvents() {
+        return Math.max(0, claimed.get() - consumed.get());
+    }
+
+    /** Stops the background thread once the invocations already buffered have been passed to the delegate. */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+    }
+
+    private void publish(@Nullable InvocationContext context, @Nullable Object result, @Nullable Throwable cause) {
+        if (context == null) {
+            return;
+        }
+        long endNanos = System.nanoTime();
+        long sequence = claim();
+        if (sequence < 0) {
+            dropped.increment();
+        } else {
+            slots[(int) sequence & mask].publish(sequence, context, endNanos, result, cause);
+        }
+        PooledInvocationContext.release(context);
+    }
+
+    /** Returns the claimed sequence, or -1 if the invocation should be dropped. */
+    private long claim() {
+        while (true) {
+            long sequence = claimed.get();
+            long pending = sequence - consumed.get();
+            if (pending >= slots.length || (overflowPolicy == OverflowPolicy.SAMPLE && !sample(pending))) {
+                // a consumer which died cannot free space, so blocking callers would wait forever
+                if (overflowPolicy != OverflowPolicy.BLOCK || closed || !consumer.isAlive()) {
+                    return -1;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    private boolean sample(long pending) {
+        long half = slots.length / 2;
+        return pending <= half || ThreadLocalRandom.current().nextLong(half) < slots.length - pending;
+    }
+
+    /**
+     * Replays buffered invocations until closed. While idle the consumer first yields and then parks for
+     * progressively longer, up to {@link #MAX_IDLE_PARK_NANOS}, so an idle handler costs little CPU while a busy one
+     * replays invocations with little delay.
+     */
+    private void consume() {
+        ReplayContext context = new ReplayContext();
+        long sequence = consumed.get();
+        int idleSpins = 0;
+        long idleParkNanos = MIN_IDLE_PARK_NANOS;
+        while (true) {
+            Slot slot = slots[(int) sequence & mask];
+            if (slot.sequence == sequence) {
+                slot.replay(delegate, context);
+                sequence++;
+                consumed.lazySet(sequence);
+                idleSpins = 0;
+                idleParkNanos = MIN_IDLE_PARK_NANOS;
+            } else if (closed && claimed.get() == sequence) {
+                return;
+            } else if (idleSpins < IDLE_SPINS) {
+                idleSpins++;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(idleParkNanos);
+                idleParkNanos = Math.min(idleParkNanos * 2, MAX_IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncInvocationEventHandler{delegate=" + delegate
+                + ", bufferSize=" + slots.length
+                + ", overflowPolicy=" + overflowPolicy + '}';
+    }
+
+    /** Buffered invocation, written by the thread which claimed its sequence and read by the consumer. */
+    private static final class Slot {
+        @Nullable private Object instance;
+        @Nullable private Method method;
+        @Nullable private Object[] args;
+        private long startNanos;
+        private long endNanos;
+        @Nullable private Object result;
+        @Nullable private Throwable cause;
+        /** Sequence of the invocation this slot holds, written last by the producer to publish the fields above. */
+        private volatile long sequence;
+
+        Slot(long initialSequence) {
+            this.sequence = initialSequence;
+        }
+
+        void publish(long newSequence, InvocationContext context, long end, @Nullable Object value,
+                @Nullable Throwable failure) {
+            this.instance = context.getInstance();
+            this.method = context.getMethod();
+            Object[] invocationArgs = context.getArgs();
+            this.args = (invocationArgs.length == 0) ? invocationArgs : invocationArgs.clone();
+            this.startNanos = context.getStartTimeNanos();
+            this.endNanos = end;
+            this.result = value;
+            this.cause = failure;
+            this.sequence = newSequence;
+        }
+
+        void replay(InvocationEventHandler<InvocationContext> handler, ReplayContext context) {
+            // shift the start time so that durations measured from now match the invocation's duration
+            context.reset(startNanos + (System.nanoTime() - endNanos), instance, checkNotNull(method, "method"), args);
+            Throwable failure = cause;
+            try {
+                if (failure == null) {
+                    handler.onSuccess(context, result);
+                } else {
+                    handler.onFailure(context, failure);
+                }
+            } catch (Throwable e) {
+                // errors must not stop the consumer, which would leave invocations queued forever
+                logger.warn("Exception handling asynchronous invocation of {}.{} by {}",
+                        SafeArg.of("class", context.getMethod().getDeclaringClass().getName()),
+                        SafeArg.of("method", context.getMethod().getName()),
+                        UnsafeArg.of("handler", handler),
+                        e);
+            }
+            instance = null;
+            method = null;
+            args = null;
+            result = null;
+            cause = null;
+        }
+    }
+
+    /** Context handed to the delegate, reused for every invocation replayed by the consumer thread. */
+    private static final class ReplayContext implements InvocationContext {
+        private static final Object[] NO_ARGS = {};
+
+        private long startTimeNanos;
+        @Nullable private Object instance;
+        @Nullable private Method method;
+        private Object[] args = NO_ARGS;
+
+        void reset(long newStartTimeNanos, @Nullable Object newInstance, Method newMethod,
+                @Nullable Object[] newArgs) {
+            this.startTimeNanos = newStartTimeNanos;
+            this.instance = newInstance;
+            this.method = newMethod;
+            this.args = (newArgs == null) ? NO_ARGS : newArgs;
+        }
+
+        @Override
+        public long getStartTimeNanos() {
+            return startTimeNanos;
+        }
+
+        @Nullable
+        @Override
+        public Object getInstance() {
+            return instance;
+        }
+
+        @Override
+        public Method getMethod() {
+            return checkNotNull(method, "method");
+        }
+
+        @Override
+        public Object[] getArgs() {
+            return args;
+        }
+
+        @Override
+        public String toString() {
+            return "ReplayContext [startTimeNanos=" + startTimeNanos
+                    + ", instance=" + instance
+                    + ", method=" + method + ']';
+        }
+    }
+
+}
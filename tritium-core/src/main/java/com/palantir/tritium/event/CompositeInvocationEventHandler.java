@@ -22,20 +22,39 @@ import com.google.common.collect.ImmutableList;
 import com.palantir.logsafe.SafeArg;
 import com.palantir.logsafe.UnsafeArg;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.List;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Invokes each of a list of handlers in turn, in order for {@link #preInvocation} and in reverse order for
+ * {@link #onSuccess} and {@link #onFailure}.
+ * <p>
+ * Handlers whose enablement is controlled by {@link InstrumentationProperties} are linked once per
+ * {@link InstrumentationProperties#reload() reload} rather than checked on every invocation: disabled handlers are
+ * pruned from the linked list, and if no handler remains this handler reports itself disabled so that proxies call
+ * straight through to their delegate. Other handlers are checked on every invocation as before.
+ * <p>
+ * Each invocation is completed by exactly the handlers whose {@link #preInvocation} was called, even if a handler is
+ * enabled or disabled while the invocation is in progress, so handlers which track invocations in flight stay
+ * balanced.
+ */
 public final class CompositeInvocationEventHandler extends AbstractInvocationEventHandler<InvocationContext> {
 
     private static final Logger logger = LoggerFactory.getLogger(CompositeInvocationEventHandler.class);
 
-    private final List<InvocationEventHandler<InvocationContext>> handlers;
+    /** Context of handlers which were disabled when the invocation started, which must not complete it. */
+    private static final InvocationContext SKIPPED = DefaultInvocationContext.of(
+            CompositeInvocationEventHandler.class, skippedMethod(), null);
+
+    private final Linker linker;
 
-    private CompositeInvocationEventHandler(List<InvocationEventHandler<InvocationContext>> handlers) {
-        this.handlers = ImmutableList.copyOf(handlers);
+    private CompositeInvocationEventHandler(Linker linker) {
+        super((java.util.function.BooleanSupplier) linker::isEnabled);
+        this.linker = linker;
     }
 
     public static InvocationEventHandler<InvocationContext> of(
@@ -46,14 +65,14 @@ public final class CompositeInvocationEventHandler extends AbstractInvocationEve
         } else if (handlers.size() == 1) {
             return checkNotNull(handlers.iterator().next(), "at index 0");
         } else {
-            return new CompositeInvocationEventHandler(handlers);
+            return new CompositeInvocationEventHandler(new Linker(ImmutableList.copyOf(handlers)));
         }
     }
 
     @Nullable
-    private InvocationEventHandler<InvocationContext> tryGetEnabledHandler(int index) {
-        InvocationEventHandler<InvocationContext> handler = handlers.get(index);
-        if (handler != null && handler.isEnabled()) {
+    private static InvocationEventHandler<InvocationContext> tryGetEnabledHandler(Linked linked, int index) {
+        InvocationEventHandler<InvocationContext> handler = linked.handlers.get(index);
+        if (!linked.checkEnabled[index] || handler.isEnabled()) {
             return handler;
         }
         return null;
@@ -61,27 +80,36 @@ public final class CompositeInvocationEventHandler extends AbstractInvocationEve
 
     @Override
     public InvocationContext preInvocation(@Nonnull Object instance, @Nonnull Method method, @Nonnull Object[] args) {
-        final int count = handlers.size();
-        InvocationContext[] contexts = new InvocationContext[count];
+        Linked linked = linker.current();
+        final int count = linked.handlers.size();
+        PooledInvocationContext context = PooledInvocationContext.acquire(instance, method);
+        context.link(linked);
+        InvocationContext[] contexts = context.contexts(count);
 
         for (int i = 0; i < count; i++) {
-            contexts[i] = handlePreInvocation(tryGetEnabledHandler(i), instance, method, args);
+            InvocationEventHandler<InvocationContext> handler = tryGetEnabledHandler(linked, i);
+            contexts[i] = (handler == null) ? SKIPPED : handlePreInvocation(handler, instance, method, args);
         }
 
-        return new CompositeInvocationContext(instance, method, args, contexts);
+        return context;
     }
 
     @Override
     public void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
         debugIfNullContext(context);
         if (context != null) {
-            success(((CompositeInvocationContext) context).getContexts(), result);
+            PooledInvocationContext pooledContext = (PooledInvocationContext) context;
+            Linked linked = linkedOrCurrent(pooledContext);
+            success(linked, pooledContext.contexts(linked.handlers.size()), result);
+            PooledInvocationContext.release(context);
         }
     }
 
-    private void success(@Nonnull InvocationContext[] contexts, @Nullable Object result) {
-        for (int i = contexts.length - 1; i > -1; i--) {
-            handleSuccess(tryGetEnabledHandler(i), contexts[i], result);
+    private static void success(Linked linked, @Nonnull InvocationContext[] contexts, @Nullable Object result) {
+        for (int i = linked.handlers.size() - 1; i > -1; i--) {
+            if (contexts[i] != SKIPPED) {
+                handleSuccess(linked.handlers.get(i), contexts[i], result);
+            }
         }
     }
 
@@ -89,16 +117,30 @@ public final class CompositeInvocationEventHandler extends AbstractInvocationEve
     public void onFailure(@Nullable InvocationContext context, @Nonnull Throwable cause) {
         debugIfNullContext(context);
         if (context != null) {
-            failure(((CompositeInvocationContext) context).getContexts(), cause);
+            PooledInvocationContext pooledContext = (PooledInvocationContext) context;
+            Linked linked = linkedOrCurrent(pooledContext);
+            failure(linked, pooledContext.contexts(linked.handlers.size()), cause);
+            PooledInvocationContext.release(context);
         }
     }
 
-    private void failure(InvocationContext[] contexts, @Nonnull Throwable cause) {
-        for (int i = contexts.length - 1; i > -1; i--) {
-            handleFailure(tryGetEnabledHandler(i), contexts[i], cause);
+    private static void failure(Linked linked, InvocationContext[] contexts, @Nonnull Throwable cause) {
+        for (int i = linked.handlers.size() - 1; i > -1; i--) {
+            if (contexts[i] != SKIPPED) {
+                handleFailure(linked.handlers.get(i), contexts[i], cause);
+            }
         }
     }
 
+    /**
+     * Returns the handlers linked when the invocation started, so that a reload during the invocation does not
+     * complete it with a different set of handlers than it was started with.
+     */
+    private Linked linkedOrCurrent(PooledInvocationContext context) {
+        Linked linked = context.linked();
+        return (linked == null) ? linker.current() : linked;
+    }
+
     @Nullable
     private static InvocationContext handlePreInvocation(
             @Nullable InvocationEventHandler<? extends InvocationContext> handler,
@@ -118,7 +160,7 @@ public final class CompositeInvocationEventHandler extends AbstractInvocationEve
 
     @Override
     public String toString() {
-        return "CompositeInvocationEventHandler{" + "handlers=" + handlers + '}';
+        return "CompositeInvocationEventHandler{" + "handlers=" + linker.handlers + '}';
     }
 
     private static void preInvocationFailed(
@@ -175,22 +217,83 @@ public final class CompositeInvocationEventHandler extends AbstractInvocationEve
                 exception);
     }
 
-    static class CompositeInvocationContext extends DefaultInvocationContext {
+    private static Method skippedMethod() {
+        try {
+            return Object.class.getMethod("toString");
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isSwitched(InvocationEventHandler<?> handler) {
+        if (handler instanceof NoOpInvocationEventHandler) {
+            return true;
+        } else if (handler instanceof FilteredInvocationEventHandler) {
+            return isSwitched(((FilteredInvocationEventHandler) handler).delegate());
+        }
+        return handler instanceof AbstractInvocationEventHandler
+                && ((AbstractInvocationEventHandler<?>) handler).isSwitched();
+    }
+
+    private static final class Linker {
+        private final List<InvocationEventHandler<InvocationContext>> handlers;
+        private final boolean[] switched;
+        private volatile Linked linked;
+
+        Linker(List<InvocationEventHandler<InvocationContext>> handlers) {
+            this.handlers = handlers;
+            this.switched = new boolean[handlers.size()];
+            for (int i = 0; i < switched.length; i++) {
+                switched[i] = isSwitched(handlers.get(i));
+            }
+            this.linked = link(InstrumentationProperties.switchPoint());
+        }
+
+        boolean isEnabled() {
+            return current().isEnabled();
+        }
+
+        Linked current() {
+            Linked current = linked;
+            int switchPoint = InstrumentationProperties.switchPoint();
+            if (current.switchPoint != switchPoint) {
+                // racing threads may each relink, any of the resulting equivalent lists may be kept
+                current = link(switchPoint);
+                linked = current;
+            }
+            return current;
+        }
 
-        private final InvocationContext[] contexts;
+        private Linked link(int switchPoint) {
+            ImmutableList.Builder<InvocationEventHandler<InvocationContext>> enabled = ImmutableList.builder();
+            boolean[] checkEnabled = new boolean[handlers.size()];
+            int count = 0;
+            for (int i = 0; i < handlers.size(); i++) {
+                InvocationEventHandler<InvocationContext> handler = handlers.get(i);
+                if (!switched[i] || handler.isEnabled()) {
+                    enabled.add(handler);
+                    checkEnabled[count++] = !switched[i];
+                }
+            }
+            return new Linked(switchPoint, enabled.build(), Arrays.copyOf(checkEnabled, count));
+        }
+    }
 
-        CompositeInvocationContext(
-                Object instance,
-                Method method,
-                @Nullable Object[] args,
-                InvocationContext[] contexts) {
+    /** Handlers linked at a given {@link InstrumentationProperties#switchPoint() switch point}. */
+    static final class Linked {
+        private final int switchPoint;
+        private final List<InvocationEventHandler<InvocationContext>> handlers;
+        /** Whether the handler at each index must have {@link InvocationEventHandler#isEnabled()} checked. */
+        private final boolean[] checkEnabled;
 
-            super(System.nanoTime(), instance, method, args);
-            this.contexts = checkNotNull(contexts);
+        Linked(int switchPoint, List<InvocationEventHandler<InvocationContext>> handlers, boolean[] checkEnabled) {
+            this.switchPoint = switchPoint;
+            this.handlers = handlers;
+            this.checkEnabled = checkEnabled;
         }
 
-        InvocationContext[] getContexts() {
-            return contexts;
+        boolean isEnabled() {
+            return !handlers.isEmpty();
         }
     }
 }
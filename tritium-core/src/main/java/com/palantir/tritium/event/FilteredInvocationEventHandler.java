@@ -0,0 +1,113 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event;
+
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.palantir.tritium.api.event.InstrumentationFilter;
+import java.lang.reflect.Method;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Applies an {@link InstrumentationFilter} to a single handler, so that handlers of the same proxy can be sampled at
+ * different rates. For example, a metrics handler can record every invocation while a tracing handler wrapped with
+ * {@link InstrumentationFilters#rateLimited(double)} only traces some of them.
+ * <p>
+ * Invocations rejected by the filter never reach the delegate; its {@link #onSuccess} and {@link #onFailure} are only
+ * called for invocations whose {@link #preInvocation} it handled.
+ */
+public final class FilteredInvocationEventHandler implements InvocationEventHandler<InvocationContext> {
+
+    private static final InvocationContext UNINSTRUMENTED = DefaultInvocationContext.of(
+            FilteredInvocationEventHandler.class, uninstrumentedMethod(), null);
+
+    private final InvocationEventHandler<InvocationContext> delegate;
+    private final InstrumentationFilter filter;
+
+    private FilteredInvocationEventHandler(
+            InvocationEventHandler<InvocationContext> delegate,
+            InstrumentationFilter filter) {
+        this.delegate = checkNotNull(delegate, "delegate");
+        this.filter = checkNotNull(filter, "filter");
+    }
+
+    /**
+     * Returns a handler which only passes invocations accepted by the specified filter to the specified handler.
+     *
+     * @param delegate handler to filter
+     * @param filter filter deciding which invocations are passed to the handler
+     * @return filtered handler
+     */
+    public static InvocationEventHandler<InvocationContext> of(
+            InvocationEventHandler<InvocationContext> delegate,
+            InstrumentationFilter filter) {
+        checkNotNull(delegate, "delegate");
+        checkNotNull(filter, "filter");
+        if (filter == InstrumentationFilters.INSTRUMENT_ALL) {
+            return delegate;
+        } else if (filter == InstrumentationFilters.INSTRUMENT_NONE) {
+            return NoOpInvocationEventHandler.INSTANCE;
+        }
+        return new FilteredInvocationEventHandler(delegate, filter);
+    }
+
+    InvocationEventHandler<InvocationContext> delegate() {
+        return delegate;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return delegate.isEnabled();
+    }
+
+    @Override
+    public InvocationContext preInvocation(@Nonnull Object instance, @Nonnull Method method, @Nonnull Object[] args) {
+        if (filter.shouldInstrument(instance, method, args)) {
+            return delegate.preInvocation(instance, method, args);
+        }
+        return UNINSTRUMENTED;
+    }
+
+    @Override
+    public void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
+        if (context != UNINSTRUMENTED) {
+            delegate.onSuccess(context, result);
+        }
+    }
+
+    @Override
+    public void onFailure(@Nullable InvocationContext context, @Nonnull Throwable cause) {
+        if (context != UNINSTRUMENTED) {
+            delegate.onFailure(context, cause);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FilteredInvocationEventHandler{delegate=" + delegate + ", filter=" + filter + '}';
+    }
+
+    private static Method uninstrumentedMethod() {
+        try {
+            return Object.class.getMethod("toString");
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
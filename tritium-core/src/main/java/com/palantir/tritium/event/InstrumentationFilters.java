@@ -16,8 +16,11 @@
 
 package com.palantir.tritium.event;
 
+import static com.palantir.logsafe.Preconditions.checkArgument;
+
 import com.palantir.tritium.api.event.InstrumentationFilter;
 import java.lang.reflect.Method;
+import java.util.concurrent.ThreadLocalRandom;
 import javax.annotation.Nonnull;
 
 public enum InstrumentationFilters implements InstrumentationFilter {
@@ -42,6 +45,34 @@ public enum InstrumentationFilters implements InstrumentationFilter {
                 isEnabledSupplier.getAsBoolean();
     }
 
+    /**
+     * Returns a filter which instruments each invocation independently with the specified probability.
+     *
+     * @param probability probability in [0, 1] that an invocation is instrumented
+     * @return sampling filter
+     */
+    public static InstrumentationFilter sampled(double probability) {
+        checkArgument(probability >= 0.0 && probability <= 1.0, "probability must be in [0, 1]");
+        if (probability == 0.0) {
+            return INSTRUMENT_NONE;
+        } else if (probability == 1.0) {
+            return INSTRUMENT_ALL;
+        }
+        return (instance, method, args) -> ThreadLocalRandom.current().nextDouble() < probability;
+    }
+
+    /**
+     * Returns a filter which instruments at most the specified number of invocations per second of each method,
+     * spaced evenly over each second. Methods called less often than that are always instrumented.
+     *
+     * @param invocationsPerSecond maximum instrumented invocations per second per method
+     * @return rate limited filter
+     */
+    public static InstrumentationFilter rateLimited(double invocationsPerSecond) {
+        checkArgument(invocationsPerSecond > 0.0, "invocationsPerSecond must be positive");
+        return new RateLimitedInstrumentationFilter(invocationsPerSecond, System::nanoTime);
+    }
+
     /**
      * Bridge for backward compatibility.
      * @deprecated use {@link #from(java.util.function.BooleanSupplier)}
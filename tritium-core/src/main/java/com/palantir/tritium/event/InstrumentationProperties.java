@@ -25,6 +25,7 @@ import com.palantir.logsafe.SafeArg;
 import com.palantir.tritium.api.functions.BooleanSupplier;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,16 +39,47 @@ public final class InstrumentationProperties {
 
     private static volatile Supplier<Map<String, String>> instrumentationProperties = createSupplier();
 
+    /**
+     * Incremented by {@link #reload()}, invalidating every value cached by a {@link #getSystemPropertySupplier}
+     * supplier and every handler list linked by a {@link CompositeInvocationEventHandler}.
+     */
+    private static final AtomicInteger switchPoint = new AtomicInteger();
+
+    /**
+     * Returns a supplier of whether instrumentation for the specified name is enabled, i.e. neither
+     * "instrument" nor "instrument.{name}" is set to "false".
+     * <p>
+     * The supplier evaluates the properties on first use and caches the result until the next {@link #reload()},
+     * so checking it costs a single volatile read and instrumentation can be toggled at runtime by changing the
+     * system properties and calling {@link #reload()}.
+     *
+     * @param name property name, without the "instrument." prefix
+     * @return supplier of whether instrumentation is enabled
+     */
     public static BooleanSupplier getSystemPropertySupplier(String name) {
         checkArgument(!Strings.isNullOrEmpty(name), "name cannot be null or empty", SafeArg.of("name", name));
-        boolean instrumentationEnabled = isGloballyEnabled() && isSpecificEnabled(name);
-        return () -> instrumentationEnabled;
+        return new SwitchedBooleanSupplier(name);
     }
 
     @SuppressWarnings("WeakerAccess") // public API
     public static boolean isSpecificEnabled(String name) {
+        return isSpecificEnabled(name, true);
+    }
+
+    /**
+     * Returns whether the specified instrumentation property is enabled.
+     *
+     * @param name property name, without the "instrument." prefix
+     * @param defaultValue value to return if the property is not set
+     * @return true if the property is "true", false if set to any other value, otherwise the default value
+     */
+    @SuppressWarnings("WeakerAccess") // public API
+    public static boolean isSpecificEnabled(String name, boolean defaultValue) {
         String qualifiedValue = instrumentationProperties().get(INSTRUMENT_PREFIX + "." + name);
-        return "true".equalsIgnoreCase(qualifiedValue) || qualifiedValue == null;
+        if (qualifiedValue == null) {
+            return defaultValue;
+        }
+        return "true".equalsIgnoreCase(qualifiedValue);
     }
 
     @SuppressWarnings("WeakerAccess") // public API
@@ -62,10 +94,20 @@ public final class InstrumentationProperties {
     /**
      * Reload the instrumentation properties.
      * <p>
-     * Note this should only be used for testing purposes when manipulating system properties at runtime.
+     * Suppliers returned by {@link #getSystemPropertySupplier} and the handlers using them pick up the reloaded
+     * properties on their next invocation, so this may be used to enable or disable instrumentation at runtime after
+     * changing the "instrument" system properties.
      */
     public static void reload() {
         instrumentationProperties = createSupplier();
+        switchPoint.incrementAndGet();
+    }
+
+    /**
+     * Returns the current switch point, which changes whenever the properties are {@link #reload() reloaded}.
+     */
+    static int switchPoint() {
+        return switchPoint.get();
     }
 
     private static Supplier<Map<String, String>> createSupplier() {
@@ -100,4 +142,41 @@ public final class InstrumentationProperties {
         return map;
     }
 
+    /**
+     * Caches whether instrumentation is enabled along with the switch point it was evaluated at, packed into a single
+     * long so that it can be read and published without locking or allocation.
+     */
+    static final class SwitchedBooleanSupplier implements BooleanSupplier {
+        private static final long UNLINKED = -1L;
+
+        private final String name;
+        private volatile long linked = UNLINKED;
+
+        SwitchedBooleanSupplier(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean getAsBoolean() {
+            int current = switchPoint();
+            long state = linked;
+            if ((state >>> 1) != Integer.toUnsignedLong(current)) {
+                state = link(current);
+            }
+            return (state & 1L) != 0;
+        }
+
+        private long link(int current) {
+            boolean enabled = isGloballyEnabled() && isSpecificEnabled(name);
+            long state = (Integer.toUnsignedLong(current) << 1) | (enabled ? 1L : 0L);
+            linked = state;
+            return state;
+        }
+
+        @Override
+        public String toString() {
+            return "SwitchedBooleanSupplier{name=" + name + '}';
+        }
+    }
+
 }
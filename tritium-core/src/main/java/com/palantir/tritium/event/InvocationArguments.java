@@ -0,0 +1,65 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.event;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Describes invocation arguments without exposing their values, by the simple name of the parameter type followed by
+ * the size of collection arguments, e.g. {@code Collection[2]}.
+ */
+public final class InvocationArguments {
+
+    private InvocationArguments() {}
+
+    /**
+     * Returns the description of an argument of the parameter type with the specified simple name.
+     *
+     * @param typeName simple name of the parameter type
+     * @param arg argument value
+     * @return description of the argument
+     */
+    public static String describe(String typeName, @Nullable Object arg) {
+        if (arg instanceof Collection) {
+            return typeName + "[" + ((Collection<?>) arg).size() + "]";
+        }
+        return typeName;
+    }
+
+    /**
+     * Returns the descriptions of the arguments of an invocation of the specified method, one per parameter.
+     *
+     * @param method invoked method
+     * @param args invocation arguments, which may be missing or fewer than the parameters
+     * @return descriptions of the arguments
+     */
+    public static List<String> describe(Method method, @Nullable Object[] args) {
+        Class<?>[] argTypes = method.getParameterTypes();
+        List<String> descriptions = new ArrayList<>(argTypes.length);
+        for (int i = 0; i < argTypes.length; i++) {
+            Object arg = (args != null && i < args.length) ? args[i] : null;
+            descriptions.add(describe(argTypes[i].getSimpleName(), arg));
+        }
+        return descriptions;
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.event;
+
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * {@link InvocationContext} that is recycled across invocations on the same thread, avoiding an allocation per
+ * invocation for handlers which complete all of their work within {@link InvocationEventHandler#onSuccess} or
+ * {@link InvocationEventHandler#onFailure}.
+ * <p>
+ * Each thread holds a stack of contexts so that nested instrumented invocations each receive their own context.
+ * The handler which acquired a context must {@link #release(InvocationContext) release} it when the invocation
+ * completes and must not retain it afterwards, as it will be handed out to a subsequent invocation on the same thread.
+ * <p>
+ * Unlike {@link DefaultInvocationContext}, pooled contexts are mutable and confined to the thread which acquired them.
+ * A context released from any other thread, e.g. when an invocation completes asynchronously, is never returned to
+ * the pool and its slot is only reclaimed once an enclosing context is released on the acquiring thread, so handlers
+ * which may complete invocations on another thread should use {@link DefaultInvocationContext} instead.
+ */
+public final class PooledInvocationContext implements InvocationContext {
+
+    private static final Object[] NO_ARGS = {};
+    private static final InvocationContext[] NO_CONTEXTS = {};
+
+    /** Maximum nesting depth of pooled contexts per thread, deeper invocations allocate new contexts. */
+    private static final int MAX_POOLED_DEPTH = 64;
+
+    private static final ThreadLocal<Pool> pools = ThreadLocal.withInitial(Pool::new);
+
+    @Nullable
+    private final Pool pool;
+    private final int index;
+
+    private long startTimeNanos;
+    @Nullable
+    private Object instance;
+    @Nullable
+    private Method method;
+    private Object[] args = NO_ARGS;
+    private InvocationContext[] contexts = NO_CONTEXTS;
+    @Nullable
+    private CompositeInvocationEventHandler.Linked linked;
+
+    private PooledInvocationContext(@Nullable Pool pool, int index) {
+        this.pool = pool;
+        this.index = index;
+    }
+
+    /**
+     * Returns a pooled context for the specified invocation which exposes the invocation arguments. Unlike
+     * {@link DefaultInvocationContext#of}, the arguments array is not copied.
+     */
+    public static InvocationContext of(Object instance, Method method, @Nullable Object[] args) {
+        PooledInvocationContext context = acquire(instance, method);
+        context.args = (args == null) ? NO_ARGS : args;
+        return context;
+    }
+
+    /**
+     * Returns a pooled context for the specified invocation for handlers which do not require the invocation
+     * arguments, {@link #getArgs()} returns an empty array.
+     */
+    public static InvocationContext withoutArgs(Object instance, Method method) {
+        return acquire(instance, method);
+    }
+
+    /**
+     * Returns the specified context to the current thread's pool if it is a pooled context acquired by the current
+     * thread, otherwise does nothing.
+     *
+     * @param context context to release
+     */
+    public static void release(@Nullable InvocationContext context) {
+        if (context instanceof PooledInvocationContext) {
+            ((PooledInvocationContext) context).recycle();
+        }
+    }
+
+    static PooledInvocationContext acquire(Object instance, Method method) {
+        PooledInvocationContext context = pools.get().next();
+        context.startTimeNanos = System.nanoTime();
+        context.instance = checkNotNull(instance, "instance");
+        context.method = checkNotNull(method, "method");
+        return context;
+    }
+
+    private void recycle() {
+        if (pool != null && pool.isOwnedByCurrentThread()) {
+            instance = null;
+            method = null;
+            args = NO_ARGS;
+            linked = null;
+            Arrays.fill(contexts, null);
+            pool.release(index);
+        }
+    }
+
+    /**
+     * Returns a reusable array of at least the specified length to hold per-handler contexts of a composite handler.
+     */
+    InvocationContext[] contexts(int count) {
+        if (contexts.length < count) {
+            contexts = new InvocationContext[count];
+        }
+        return contexts;
+    }
+
+    /**
+     * Records the handlers a composite handler invoked for this invocation, to complete it with the same handlers.
+     */
+    void link(CompositeInvocationEventHandler.Linked handlers) {
+        this.linked = handlers;
+    }
+
+    @Nullable
+    CompositeInvocationEventHandler.Linked linked() {
+        return linked;
+    }
+
+    @Override
+    public long getStartTimeNanos() {
+        return startTimeNanos;
+    }
+
+    @Nullable
+    @Override
+    public Object getInstance() {
+        return instance;
+    }
+
+    @Override
+    public Method getMethod() {
+        return checkNotNull(method, "method");
+    }
+
+    @Override
+    public Object[] getArgs() {
+        return args;
+    }
+
+    @Override
+    public String toString() {
+        return "PooledInvocationContext [startTimeNanos=" + startTimeNanos
+                + ", instance=" + instance
+                + ", method=" + method + ']';
+    }
+
+    private static final class Pool {
+        private final Thread owner = Thread.currentThread();
+        private final PooledInvocationContext[] contexts = new PooledInvocationContext[MAX_POOLED_DEPTH];
+        private int depth;
+
+        PooledInvocationContext next() {
+            if (depth >= contexts.length) {
+                return new PooledInvocationContext(null, -1);
+            }
+            PooledInvocationContext context = contexts[depth];
+            if (context == null) {
+                context = new PooledInvocationContext(this, depth);
+                contexts[depth] = context;
+            }
+            depth++;
+            return context;
+        }
+
+        /**
+         * Releases the context at the specified index along with any contexts acquired after it which were not
+         * released, e.g. due to a handler becoming disabled mid-invocation.
+         */
+        void release(int index) {
+            if (index < depth) {
+                depth = index;
+            }
+        }
+
+        boolean isOwnedByCurrentThread() {
+            return owner == Thread.currentThread();
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event;
+
+import com.palantir.tritium.api.event.InstrumentationFilter;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import javax.annotation.Nonnull;
+
+/**
+ * Instruments at most one invocation of each method per interval. Each method tracks the earliest time its next
+ * invocation may be instrumented; an invocation at or after that time claims it with a single compare-and-set, and
+ * invocations losing that race are not instrumented.
+ */
+final class RateLimitedInstrumentationFilter implements InstrumentationFilter {
+
+    private final Map<Method, AtomicLong> nextPermits = new ConcurrentHashMap<>();
+    private final long intervalNanos;
+    private final LongSupplier ticker;
+
+    RateLimitedInstrumentationFilter(double invocationsPerSecond, LongSupplier ticker) {
+        this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / invocationsPerSecond));
+        this.ticker = ticker;
+    }
+
+    @Override
+    public boolean shouldInstrument(@Nonnull Object instance, @Nonnull Method method, @Nonnull Object[] args) {
+        long now = ticker.getAsLong();
+        AtomicLong nextPermit = nextPermits.get(method);
+        if (nextPermit == null) {
+            nextPermit = nextPermits.computeIfAbsent(method, m -> new AtomicLong(now));
+        }
+        long permit = nextPermit.get();
+        return now - permit >= 0 && nextPermit.compareAndSet(permit, now + intervalNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitedInstrumentationFilter{intervalNanos=" + intervalNanos + '}';
+    }
+
+}
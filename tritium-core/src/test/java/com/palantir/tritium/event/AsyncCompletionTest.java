@@ -0,0 +1,102 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class AsyncCompletionTest {
+
+    private final AtomicInteger completions = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final AsyncCompletion.Callback callback = cause -> {
+        completions.incrementAndGet();
+        failure.set(cause);
+    };
+
+    @Test
+    public void testIsAsync() throws Exception {
+        assertThat(AsyncCompletion.isAsync(AsyncService.class.getMethod("stage"))).isTrue();
+        assertThat(AsyncCompletion.isAsync(AsyncService.class.getMethod("completableFuture"))).isTrue();
+        assertThat(AsyncCompletion.isAsync(AsyncService.class.getMethod("listenableFuture"))).isTrue();
+        assertThat(AsyncCompletion.isAsync(Object.class.getMethod("toString"))).isFalse();
+    }
+
+    @Test
+    public void testNotFuture() {
+        assertThat(AsyncCompletion.whenComplete("result", callback)).isFalse();
+        assertThat(AsyncCompletion.whenComplete(null, callback)).isFalse();
+        assertThat(completions).hasValue(0);
+    }
+
+    @Test
+    public void testCompletionStage() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        assertThat(AsyncCompletion.whenComplete(future, callback)).isTrue();
+        assertThat(completions).hasValue(0);
+
+        future.complete("result");
+        assertThat(completions).hasValue(1);
+        assertThat(failure.get()).isNull();
+    }
+
+    @Test
+    public void testCompletionStageUnwrapsFailure() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        IllegalStateException cause = new IllegalStateException("test");
+        assertThat(AsyncCompletion.whenComplete(future.thenApply(String::trim), callback)).isTrue();
+
+        future.completeExceptionally(cause);
+        assertThat(completions).hasValue(1);
+        assertThat(failure.get()).isSameAs(cause);
+    }
+
+    @Test
+    public void testCompletedStageNotifiesImmediately() {
+        assertThat(AsyncCompletion.whenComplete(CompletableFuture.completedFuture("result"), callback)).isTrue();
+        assertThat(completions).hasValue(1);
+    }
+
+    @Test
+    public void testListenableFuture() {
+        SettableFuture<String> future = SettableFuture.create();
+        IllegalStateException cause = new IllegalStateException("test");
+        assertThat(AsyncCompletion.whenComplete(future, callback)).isTrue();
+        assertThat(completions).hasValue(0);
+
+        future.setException(cause);
+        assertThat(completions).hasValue(1);
+        assertThat(failure.get()).isSameAs(cause);
+    }
+
+    @SuppressWarnings("unused")
+    public interface AsyncService {
+        CompletionStage<String> stage();
+
+        CompletableFuture<String> completableFuture();
+
+        ListenableFuture<String> listenableFuture();
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.awaitility.Duration;
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncInvocationEventHandlerTest {
+
+    private static final Object[] EMPTY_ARGS = {};
+
+    private final RecordingInvocationEventHandler recording = new RecordingInvocationEventHandler();
+    @Nullable
+    private AsyncInvocationEventHandler handler;
+
+    @After
+    public void after() {
+        if (handler != null) {
+            handler.close();
+        }
+    }
+
+    @Test
+    public void testReplaysCompletions() throws Exception {
+        handler = AsyncInvocationEventHandler.of(recording, 16, AsyncInvocationEventHandler.OverflowPolicy.DROP);
+        assertThat(handler.isEnabled()).isTrue();
+
+        handler.onSuccess(handler.preInvocation(this, toStringMethod(), EMPTY_ARGS), "result");
+        handler.onFailure(handler.preInvocation(this, toStringMethod(), EMPTY_ARGS), new IllegalStateException());
+
+        await().atMost(Duration.FIVE_SECONDS).untilAsserted(() ->
+                assertThat(recording.events).containsExactly("onSuccess:result", "onFailure:IllegalStateException"));
+        assertThat(recording.threads).doesNotContain(Thread.currentThread());
+        assertThat(handler.getDroppedEvents()).isZero();
+        assertThat(handler.getPendingEvents()).isZero();
+    }
+
+    @Test
+    public void testCopiesArguments() throws Exception {
+        recording.blockUntil = new CountDownLatch(1);
+        handler = AsyncInvocationEventHandler.of(recording, 16, AsyncInvocationEventHandler.OverflowPolicy.DROP);
+
+        Object[] args = {"before"};
+        handler.onSuccess(handler.preInvocation(this, toStringMethod(), args), "result");
+        args[0] = "after";
+
+        recording.blockUntil.countDown();
+        await().atMost(Duration.FIVE_SECONDS).untilAsserted(() ->
+                assertThat(recording.args).containsExactly("[before]"));
+    }
+
+    @Test
+    public void testDropsWhenFull() throws Exception {
+        recording.blockUntil = new CountDownLatch(1);
+        handler = AsyncInvocationEventHandler.of(recording, 2, AsyncInvocationEventHandler.OverflowPolicy.DROP);
+
+        for (int i = 0; i < 5; i++) {
+            handler.onSuccess(handler.preInvocation(this, toStringMethod(), EMPTY_ARGS), i);
+        }
+        assertThat(handler.getDroppedEvents()).isEqualTo(3);
+
+        recording.blockUntil.countDown();
+        await().atMost(Duration.FIVE_SECONDS).untilAsserted(() ->
+                assertThat(recording.events).containsExactly("onSuccess:0", "onSuccess:1"));
+    }
+
+    @Test
+    public void testCloseDrainsAndDisables() throws Exception {
+        handler = AsyncInvocationEventHandler.of(recording, 4, AsyncInvocationEventHandler.OverflowPolicy.BLOCK);
+        for (int i = 0; i < 20; i++) {
+            handler.onSuccess(handler.preInvocation(this, toStringMethod(), EMPTY_ARGS), i);
+        }
+        handler.close();
+
+        assertThat(handler.isEnabled()).isFalse();
+        assertThat(handler.getDroppedEvents()).isZero();
+        await().atMost(Duration.FIVE_SECONDS).untilAsserted(() -> assertThat(recording.events).hasSize(20));
+    }
+
+    @Test
+    public void testContinuesAfterDelegateError() throws Exception {
+        handler = AsyncInvocationEventHandler.of(recording, 2, AsyncInvocationEventHandler.OverflowPolicy.BLOCK);
+        handler.onSuccess(handler.preInvocation(this, toStringMethod(), EMPTY_ARGS), "error");
+        for (int i = 0; i < 5; i++) {
+            handler.onSuccess(handler.preInvocation(this, toStringMethod(), EMPTY_ARGS), i);
+        }
+
+        await().atMost(Duration.FIVE_SECONDS).untilAsserted(() -> assertThat(recording.events).containsExactly(
+                "onSuccess:0", "onSuccess:1", "onSuccess:2", "onSuccess:3", "onSuccess:4"));
+    }
+
+    @Test
+    public void testInvalidBufferSize() {
+        assertThatThrownBy(() ->
+                AsyncInvocationEventHandler.of(recording, 3, AsyncInvocationEventHandler.OverflowPolicy.DROP))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("bufferSize must be a power of two: {bufferSize=3}");
+    }
+
+    private static Method toStringMethod() throws NoSuchMethodException {
+        return Object.class.getDeclaredMethod("toString");
+    }
+
+    private static final class RecordingInvocationEventHandler
+            extends AbstractInvocationEventHandler<InvocationContext> {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final List<Thread> threads = new CopyOnWriteArrayList<>();
+        private final List<String> args = new CopyOnWriteArrayList<>();
+        @Nullable
+        private volatile CountDownLatch blockUntil;
+
+        @Override
+        public InvocationContext preInvocation(
+                @Nonnull Object instance,
+                @Nonnull Method method,
+                @Nonnull Object[] args) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
+            if ("error".equals(result)) {
+                throw new StackOverflowError();
+            }
+            if (context != null) {
+                args.add(Arrays.toString(context.getArgs()));
+            }
+            record("onSuccess:" + result);
+        }
+
+        @Override
+        public void onFailure(@Nullable InvocationContext context, @Nonnull Throwable cause) {
+            record("onFailure:" + cause.getClass().getSimpleName());
+        }
+
+        private void record(String event) {
+            CountDownLatch latch = blockUntil;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            events.add(event);
+            threads.add(Thread.currentThread());
+        }
+    }
+
+}
@@ -24,14 +24,23 @@ import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.junit.After;
 import org.junit.Test;
 
 public class CompositeInvocationEventHandlerTest {
 
     private static final Object[] EMPTY_ARGS = {};
 
+    @After
+    public void after() {
+        System.getProperties().entrySet().removeIf(entry ->
+                entry.getKey().toString().startsWith("instrument"));
+        InstrumentationProperties.reload();
+    }
+
     @Test
     @SuppressWarnings("checkstyle:illegalthrows")
     public void testSimpleFlow() throws Throwable {
@@ -131,8 +140,7 @@ public class CompositeInvocationEventHandlerTest {
         InvocationEventHandler<InvocationContext> compositeHandler = CompositeInvocationEventHandler.of(handlers);
         assertThat(compositeHandler).isInstanceOf(CompositeInvocationEventHandler.class);
 
-        InvocationContext context = new CompositeInvocationEventHandler.CompositeInvocationContext(this,
-                getToStringMethod(), null, new InvocationContext[] {null, null});
+        InvocationContext context = compositeHandler.preInvocation(this, getToStringMethod(), EMPTY_ARGS);
         compositeHandler.onSuccess(context, "Hello World");
     }
 
@@ -144,8 +152,7 @@ public class CompositeInvocationEventHandlerTest {
         InvocationEventHandler<InvocationContext> compositeHandler = CompositeInvocationEventHandler.of(handlers);
         assertThat(compositeHandler).isInstanceOf(CompositeInvocationEventHandler.class);
 
-        InvocationContext context = new CompositeInvocationEventHandler.CompositeInvocationContext(this,
-                getToStringMethod(), null, new InvocationContext[] {null, null});
+        InvocationContext context = compositeHandler.preInvocation(this, getToStringMethod(), EMPTY_ARGS);
         compositeHandler.onFailure(context, new RuntimeException());
     }
 
@@ -158,6 +165,51 @@ public class CompositeInvocationEventHandlerTest {
                 .endsWith("]}");
     }
 
+    @Test
+    public void testRelinksHandlersOnReload() throws Exception {
+        CountingInvocationEventHandler first = new CountingInvocationEventHandler("composite-first");
+        CountingInvocationEventHandler second = new CountingInvocationEventHandler("composite-second");
+        InvocationEventHandler<InvocationContext> compositeHandler = CompositeInvocationEventHandler.of(
+                Arrays.asList(first, second));
+        assertThat(compositeHandler.isEnabled()).isTrue();
+
+        System.setProperty("instrument.composite-first", "false");
+        InstrumentationProperties.reload();
+        assertThat(compositeHandler.isEnabled()).isTrue();
+        compositeHandler.onSuccess(compositeHandler.preInvocation(this, getToStringMethod(), EMPTY_ARGS), "test");
+        assertThat(first.invocations).hasValue(0);
+        assertThat(second.invocations).hasValue(2);
+
+        System.setProperty("instrument.composite-second", "false");
+        InstrumentationProperties.reload();
+        assertThat(compositeHandler.isEnabled()).isFalse();
+
+        System.clearProperty("instrument.composite-first");
+        InstrumentationProperties.reload();
+        assertThat(compositeHandler.isEnabled()).isTrue();
+        compositeHandler.onFailure(
+                compositeHandler.preInvocation(this, getToStringMethod(), EMPTY_ARGS), new RuntimeException());
+        assertThat(first.invocations).hasValue(2);
+        assertThat(second.invocations).hasValue(2);
+    }
+
+    @Test
+    public void testCompletesWithHandlersLinkedAtPreInvocation() throws Exception {
+        CountingInvocationEventHandler first = new CountingInvocationEventHandler("composite-first");
+        CountingInvocationEventHandler second = new CountingInvocationEventHandler("composite-second");
+        InvocationEventHandler<InvocationContext> compositeHandler = CompositeInvocationEventHandler.of(
+                Arrays.asList(first, second));
+
+        InvocationContext context = compositeHandler.preInvocation(this, getToStringMethod(), EMPTY_ARGS);
+        System.setProperty("instrument", "false");
+        InstrumentationProperties.reload();
+        compositeHandler.onSuccess(context, "test");
+
+        assertThat(compositeHandler.isEnabled()).isFalse();
+        assertThat(first.invocations).hasValue(2);
+        assertThat(second.invocations).hasValue(2);
+    }
+
     private static Method getToStringMethod() throws NoSuchMethodException {
         return Object.class.getDeclaredMethod("toString");
     }
@@ -182,4 +234,32 @@ public class CompositeInvocationEventHandlerTest {
         public void onFailure(@Nullable InvocationContext context, @Nonnull Throwable cause) {}
     }
 
+    private static final class CountingInvocationEventHandler
+            extends AbstractInvocationEventHandler<InvocationContext> {
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        CountingInvocationEventHandler(String name) {
+            super((java.util.function.BooleanSupplier) InstrumentationProperties.getSystemPropertySupplier(name));
+        }
+
+        @Override
+        public InvocationContext preInvocation(
+                @Nonnull Object instance,
+                @Nonnull Method method,
+                @Nonnull Object[] args) {
+            invocations.incrementAndGet();
+            return DefaultInvocationContext.of(instance, method, args);
+        }
+
+        @Override
+        public void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
+            invocations.incrementAndGet();
+        }
+
+        @Override
+        public void onFailure(@Nullable InvocationContext context, @Nonnull Throwable cause) {
+            invocations.incrementAndGet();
+        }
+    }
+
 }
@@ -0,0 +1,107 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.palantir.tritium.api.event.InstrumentationFilter;
+import java.lang.reflect.Method;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FilteredInvocationEventHandlerTest {
+
+    private static final Object[] EMPTY_ARGS = {};
+
+    private final Method method = getToStringMethod();
+    private final InvocationContext delegateContext = DefaultInvocationContext.of(this, method, EMPTY_ARGS);
+    private final RuntimeException cause = new RuntimeException();
+
+    @SuppressWarnings("unchecked")
+    private final InvocationEventHandler<InvocationContext> delegate = mock(InvocationEventHandler.class);
+    private final InstrumentationFilter filter = mock(InstrumentationFilter.class);
+    private InvocationEventHandler<InvocationContext> handler;
+
+    @Before
+    public void before() {
+        when(delegate.preInvocation(any(), any(), any())).thenReturn(delegateContext);
+        handler = FilteredInvocationEventHandler.of(delegate, filter);
+    }
+
+    @Test
+    public void testInstrumented() {
+        when(filter.shouldInstrument(this, method, EMPTY_ARGS)).thenReturn(true);
+
+        InvocationContext context = handler.preInvocation(this, method, EMPTY_ARGS);
+        assertThat(context).isSameAs(delegateContext);
+        handler.onSuccess(context, "result");
+        handler.onFailure(handler.preInvocation(this, method, EMPTY_ARGS), cause);
+
+        verify(delegate, times(2)).preInvocation(this, method, EMPTY_ARGS);
+        verify(delegate).onSuccess(delegateContext, "result");
+        verify(delegate).onFailure(delegateContext, cause);
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    public void testNotInstrumented() {
+        when(filter.shouldInstrument(this, method, EMPTY_ARGS)).thenReturn(false);
+
+        InvocationContext context = handler.preInvocation(this, method, EMPTY_ARGS);
+        handler.onSuccess(context, "result");
+        handler.onFailure(handler.preInvocation(this, method, EMPTY_ARGS), cause);
+
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    public void testNullContextPassedThrough() {
+        handler.onSuccess(null, "result");
+        verify(delegate).onSuccess(null, "result");
+    }
+
+    @Test
+    public void testEnabledFromDelegate() {
+        when(delegate.isEnabled()).thenReturn(true, false);
+
+        assertThat(handler.isEnabled()).isTrue();
+        assertThat(handler.isEnabled()).isFalse();
+    }
+
+    @Test
+    public void testTrivialFilters() {
+        assertThat(FilteredInvocationEventHandler.of(delegate, InstrumentationFilters.INSTRUMENT_ALL))
+                .isSameAs(delegate);
+        assertThat(FilteredInvocationEventHandler.of(delegate, InstrumentationFilters.INSTRUMENT_NONE))
+                .isSameAs(NoOpInvocationEventHandler.INSTANCE);
+    }
+
+    private static Method getToStringMethod() {
+        try {
+            return Object.class.getDeclaredMethod("toString");
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
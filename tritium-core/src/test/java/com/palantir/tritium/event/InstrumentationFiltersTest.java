@@ -17,12 +17,16 @@
 package com.palantir.tritium.event;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
 
 import com.palantir.tritium.api.event.InstrumentationFilter;
 import com.palantir.tritium.test.TestImplementation;
 import com.palantir.tritium.test.TestInterface;
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Test;
 
 public class InstrumentationFiltersTest {
@@ -53,6 +57,60 @@ public class InstrumentationFiltersTest {
         assertThat(filter.shouldInstrument(instance, method, args)).isFalse();
     }
 
+    @Test
+    public void testSampled() {
+        assertThat(InstrumentationFilters.sampled(0.0)).isSameAs(InstrumentationFilters.INSTRUMENT_NONE);
+        assertThat(InstrumentationFilters.sampled(1.0)).isSameAs(InstrumentationFilters.INSTRUMENT_ALL);
+
+        InstrumentationFilter filter = InstrumentationFilters.sampled(0.5);
+        int instrumented = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.shouldInstrument(instance, method, args)) {
+                instrumented++;
+            }
+        }
+        assertThat(instrumented).isBetween(4_000, 6_000);
+    }
+
+    @Test
+    public void testSampledInvalidProbability() {
+        assertThatThrownBy(() -> InstrumentationFilters.sampled(1.5)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> InstrumentationFilters.sampled(-0.1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testRateLimited() throws NoSuchMethodException {
+        AtomicLong ticker = new AtomicLong(-TimeUnit.SECONDS.toNanos(1));
+        InstrumentationFilter filter = new RateLimitedInstrumentationFilter(10, ticker::get);
+        Method otherMethod = TestInterface.class.getDeclaredMethod("multiArgumentMethod",
+                String.class, int.class, Collection.class);
+
+        assertThat(filter.shouldInstrument(instance, method, args)).isTrue();
+        assertThat(filter.shouldInstrument(instance, method, args)).isFalse();
+        assertThat(filter.shouldInstrument(instance, otherMethod, args)).isTrue();
+
+        ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+        assertThat(filter.shouldInstrument(instance, method, args)).isFalse();
+
+        ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(filter.shouldInstrument(instance, method, args)).isTrue();
+        assertThat(filter.shouldInstrument(instance, method, args)).isFalse();
+
+        int instrumented = 0;
+        for (int i = 0; i < 1_000; i++) {
+            ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+            if (filter.shouldInstrument(instance, method, args)) {
+                instrumented++;
+            }
+        }
+        assertThat(instrumented).isEqualTo(10);
+    }
+
+    @Test
+    public void testRateLimitedInvalidRate() {
+        assertThatThrownBy(() -> InstrumentationFilters.rateLimited(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
     private static Method testMethod() {
         try {
             return TestInterface.class.getDeclaredMethod("test");
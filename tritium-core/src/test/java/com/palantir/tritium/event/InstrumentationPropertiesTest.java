@@ -94,6 +94,21 @@ public class InstrumentationPropertiesTest {
         assertThat(supplier.asBoolean()).isTrue();
     }
 
+    @Test
+    public void testSystemPropertySupplierReload() {
+        BooleanSupplier supplier = InstrumentationProperties.getSystemPropertySupplier("test");
+        assertThat(supplier.asBoolean()).isTrue();
+
+        System.setProperty("instrument.test", "false");
+        assertThat(supplier.asBoolean()).isTrue();
+        InstrumentationProperties.reload();
+        assertThat(supplier.asBoolean()).isFalse();
+
+        System.clearProperty("instrument.test");
+        InstrumentationProperties.reload();
+        assertThat(supplier.asBoolean()).isTrue();
+    }
+
     @Test
     @SuppressWarnings("NullAway") // explicitly testing null
     public void invalid() {
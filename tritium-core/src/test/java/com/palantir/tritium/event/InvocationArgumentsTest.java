@@ -0,0 +1,42 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Test;
+
+public class InvocationArgumentsTest {
+
+    @Test
+    public void testDescribe() throws NoSuchMethodException {
+        Method method = List.class.getMethod("addAll", int.class, Collection.class);
+
+        assertThat(InvocationArguments.describe(method, new Object[] {0, ImmutableList.of("a", "b")}))
+                .containsExactly("int", "Collection[2]");
+        assertThat(InvocationArguments.describe(method, new Object[] {0, null}))
+                .containsExactly("int", "Collection");
+        assertThat(InvocationArguments.describe(method, null))
+                .containsExactly("int", "Collection");
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+public class PooledInvocationContextTest {
+
+    private static final Object[] ARGS = {"testArgument"};
+
+    @Test
+    public void testOf() throws Exception {
+        InvocationContext context = PooledInvocationContext.of(this, toStringMethod(), ARGS);
+
+        assertThat(context.getInstance()).isSameAs(this);
+        assertThat(context.getMethod()).isEqualTo(toStringMethod());
+        assertThat(context.getArgs()).isSameAs(ARGS);
+        assertThat(context.getStartTimeNanos()).isLessThanOrEqualTo(System.nanoTime());
+        assertThat(context.toString()).contains("startTimeNanos").doesNotContain("testArgument");
+        PooledInvocationContext.release(context);
+    }
+
+    @Test
+    public void testWithoutArgs() throws Exception {
+        InvocationContext context = PooledInvocationContext.withoutArgs(this, toStringMethod());
+
+        assertThat(context.getArgs()).isEmpty();
+        PooledInvocationContext.release(context);
+    }
+
+    @Test
+    public void testReusedAfterRelease() throws Exception {
+        InvocationContext first = PooledInvocationContext.withoutArgs(this, toStringMethod());
+        PooledInvocationContext.release(first);
+
+        InvocationContext second = PooledInvocationContext.of("second", toStringMethod(), ARGS);
+        assertThat(second).isSameAs(first);
+        assertThat(second.getInstance()).isEqualTo("second");
+        PooledInvocationContext.release(second);
+    }
+
+    @Test
+    public void testNestedContextsAreDistinct() throws Exception {
+        InvocationContext outer = PooledInvocationContext.withoutArgs(this, toStringMethod());
+        InvocationContext inner = PooledInvocationContext.withoutArgs(this, toStringMethod());
+        assertThat(inner).isNotSameAs(outer);
+
+        PooledInvocationContext.release(inner);
+        assertThat(outer.getInstance()).isSameAs(this);
+        PooledInvocationContext.release(outer);
+    }
+
+    @Test
+    public void testReleaseRecoversUnreleasedContexts() throws Exception {
+        InvocationContext outer = PooledInvocationContext.withoutArgs(this, toStringMethod());
+        InvocationContext leaked = PooledInvocationContext.withoutArgs(this, toStringMethod());
+        PooledInvocationContext.release(outer);
+
+        assertThat(PooledInvocationContext.withoutArgs(this, toStringMethod())).isSameAs(outer);
+        assertThat(PooledInvocationContext.withoutArgs(this, toStringMethod())).isSameAs(leaked);
+        PooledInvocationContext.release(outer);
+    }
+
+    @Test
+    public void testReleaseFromOtherThreadIgnored() throws Exception {
+        InvocationContext context = PooledInvocationContext.withoutArgs(this, toStringMethod());
+        CompletableFuture.runAsync(() -> PooledInvocationContext.release(context)).get();
+
+        assertThat(context.getInstance()).isSameAs(this);
+        assertThat(PooledInvocationContext.withoutArgs(this, toStringMethod())).isNotSameAs(context);
+        PooledInvocationContext.release(context);
+    }
+
+    @Test
+    public void testDeeplyNested() throws Exception {
+        List<InvocationContext> contexts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            contexts.add(PooledInvocationContext.of(i, toStringMethod(), ARGS));
+        }
+        for (int i = contexts.size() - 1; i >= 0; i--) {
+            assertThat(contexts.get(i).getInstance()).isEqualTo(i);
+            PooledInvocationContext.release(contexts.get(i));
+        }
+        assertThat(PooledInvocationContext.withoutArgs(this, toStringMethod())).isSameAs(contexts.get(0));
+        PooledInvocationContext.release(contexts.get(0));
+    }
+
+    @Test
+    public void testReleaseNonPooledContext() throws Exception {
+        PooledInvocationContext.release(null);
+        PooledInvocationContext.release(DefaultInvocationContext.of(this, toStringMethod(), ARGS));
+    }
+
+    private static Method toStringMethod() throws NoSuchMethodException {
+        return Object.class.getDeclaredMethod("toString");
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.microbenchmarks;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.palantir.tritium.metrics.MetricRegistries;
+import com.palantir.tritium.metrics.caffeine.CaffeineCacheStats;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures cache hits on Guava and Caffeine caches that record stats for the cache metric sets, and reading every
+ * registered cache gauge the way a reporter does.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings({"designforextension", "NullAway", "BanGuavaCaches"})
+public class CacheMetricsBenchmark {
+
+    private static final String KEY = "key";
+
+    private Cache<String, String> guavaCache;
+    private com.github.benmanes.caffeine.cache.Cache<String, String> caffeineCache;
+    private MetricRegistry registry;
+
+    @Setup
+    public void before() {
+        registry = new MetricRegistry();
+        guavaCache = CacheBuilder.newBuilder().recordStats().build();
+        guavaCache.put(KEY, "value");
+        MetricRegistries.registerCache(registry, guavaCache, "guava");
+        caffeineCache = Caffeine.newBuilder().recordStats().build();
+        caffeineCache.put(KEY, "value");
+        CaffeineCacheStats.registerCache(registry, caffeineCache, "caffeine");
+    }
+
+    @Benchmark
+    public String guavaHit() {
+        return guavaCache.getIfPresent(KEY);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String guavaHitContended() {
+        return guavaCache.getIfPresent(KEY);
+    }
+
+    @Benchmark
+    public String caffeineHit() {
+        return caffeineCache.getIfPresent(KEY);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String caffeineHitContended() {
+        return caffeineCache.getIfPresent(KEY);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void readGauges(Blackhole blackhole) {
+        for (Gauge<?> gauge : registry.getGauges().values()) {
+            blackhole.consume(gauge.getValue());
+        }
+    }
+
+}
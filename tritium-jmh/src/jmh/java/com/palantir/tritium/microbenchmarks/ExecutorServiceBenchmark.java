@@ -0,0 +1,113 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.microbenchmarks;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.palantir.tritium.metrics.MetricRegistries;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of executor services instrumented with {@link MetricRegistries#instrument}. Direct executors
+ * isolate the cost of wrapping and recording each task, while the thread pools include the hand-off to a worker.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings({"designforextension", "NullAway"})
+public class ExecutorServiceBenchmark {
+
+    private static final Runnable TASK = () -> { };
+
+    private ExecutorService rawDirect;
+    private ExecutorService instrumentedDirect;
+    private ExecutorService rawPool;
+    private ExecutorService instrumentedPool;
+
+    @Setup
+    public void before() {
+        DefaultTaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+        rawDirect = MoreExecutors.newDirectExecutorService();
+        instrumentedDirect = MetricRegistries.instrument(
+                registry, MoreExecutors.newDirectExecutorService(), "direct");
+        rawPool = Executors.newFixedThreadPool(4);
+        instrumentedPool = MetricRegistries.instrument(registry, Executors.newFixedThreadPool(4), "pool");
+    }
+
+    @TearDown
+    public void after() {
+        rawPool.shutdownNow();
+        instrumentedPool.shutdownNow();
+    }
+
+    @Benchmark
+    public void rawDirectExecute() {
+        rawDirect.execute(TASK);
+    }
+
+    @Benchmark
+    public void instrumentedDirectExecute() {
+        instrumentedDirect.execute(TASK);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void instrumentedDirectExecuteContended() {
+        instrumentedDirect.execute(TASK);
+    }
+
+    @Benchmark
+    public Object rawPoolSubmit() throws ExecutionException, InterruptedException {
+        return rawPool.submit(TASK).get();
+    }
+
+    @Benchmark
+    public Object instrumentedPoolSubmit() throws ExecutionException, InterruptedException {
+        return instrumentedPool.submit(TASK).get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object rawPoolSubmitContended() throws ExecutionException, InterruptedException {
+        return rawPool.submit(TASK).get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object instrumentedPoolSubmitContended() throws ExecutionException, InterruptedException {
+        return instrumentedPool.submit(TASK).get();
+    }
+
+}
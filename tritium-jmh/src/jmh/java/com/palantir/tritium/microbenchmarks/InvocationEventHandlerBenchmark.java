@@ -0,0 +1,124 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.microbenchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.tritium.event.CompositeInvocationEventHandler;
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.event.metrics.MetricsInvocationEventHandler;
+import com.palantir.tritium.event.metrics.TaggedMetricsServiceInvocationEventHandler;
+import com.palantir.tritium.metrics.MetricRegistries;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the per-invocation cost of invocation event handlers independent of proxying. Run with the {@code gc}
+ * profiler to report allocation per invocation ({@code gc.alloc.rate.norm}). Contended variants share each handler, and
+ * its metrics, across four threads.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings({"designforextension", "NullAway"})
+public class InvocationEventHandlerBenchmark {
+
+    private static final Object[] ARGS = {"test"};
+
+    private final Object instance = new Object();
+    private Method method;
+
+    private InvocationEventHandler<InvocationContext> metrics;
+    private InvocationEventHandler<InvocationContext> taggedMetrics;
+    private InvocationEventHandler<InvocationContext> composite;
+
+    @Setup
+    public void before() throws NoSuchMethodException {
+        method = ProxyBenchmark.Service.class.getMethod("echo", String.class);
+        metrics = new MetricsInvocationEventHandler(MetricRegistries.createWithHdrHistogramReservoirs(), "jmh");
+        taggedMetrics = new TaggedMetricsServiceInvocationEventHandler(new DefaultTaggedMetricRegistry(), "jmh");
+        composite = CompositeInvocationEventHandler.of(ImmutableList.of(
+                new MetricsInvocationEventHandler(MetricRegistries.createWithHdrHistogramReservoirs(), "jmh"),
+                new TaggedMetricsServiceInvocationEventHandler(new DefaultTaggedMetricRegistry(), "jmh")));
+    }
+
+    @Benchmark
+    public void metrics() {
+        invoke(metrics);
+    }
+
+    @Benchmark
+    public void taggedMetrics() {
+        invoke(taggedMetrics);
+    }
+
+    @Benchmark
+    public void composite() {
+        invoke(composite);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void metricsContended() {
+        invoke(metrics);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void taggedMetricsContended() {
+        invoke(taggedMetrics);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void compositeContended() {
+        invoke(composite);
+    }
+
+    private void invoke(InvocationEventHandler<InvocationContext> handler) {
+        InvocationContext context = handler.preInvocation(instance, method, ARGS);
+        handler.onSuccess(context, "test");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(InvocationEventHandlerBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.microbenchmarks;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.palantir.tritium.metrics.MetricRegistries;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures looking up an existing timer and histogram by name as the number of metrics in the registry grows. Lookup
+ * cost should stay flat across {@link #registrySize} values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings({"designforextension", "NullAway"})
+public class MetricRegistryLookupBenchmark {
+
+    public enum RegistryType {
+        DROPWIZARD(MetricRegistry::new),
+        HDR_HISTOGRAM(MetricRegistries::createWithHdrHistogramReservoirs),
+        SLIDING_TIME_WINDOW(() -> MetricRegistries.createWithSlidingTimeWindowReservoirs(35, TimeUnit.SECONDS));
+
+        private final Supplier<MetricRegistry> registrySupplier;
+
+        RegistryType(Supplier<MetricRegistry> registrySupplier) {
+            this.registrySupplier = registrySupplier;
+        }
+    }
+
+    @Param
+    private RegistryType registryType;
+
+    @Param({"10", "1000", "10000", "50000"})
+    private int registrySize;
+
+    private MetricRegistry registry;
+    private String timerName;
+    private String histogramName;
+
+    @Setup
+    public void before() {
+        registry = registryType.registrySupplier.get();
+        for (int i = 0; i < registrySize; i++) {
+            registry.timer("timer." + i);
+            registry.histogram("histogram." + i);
+        }
+        timerName = "timer." + (registrySize / 2);
+        histogramName = "histogram." + (registrySize / 2);
+    }
+
+    @Benchmark
+    public Timer timer() {
+        return registry.timer(timerName);
+    }
+
+    @Benchmark
+    public Histogram histogram() {
+        return registry.histogram(histogramName);
+    }
+
+}
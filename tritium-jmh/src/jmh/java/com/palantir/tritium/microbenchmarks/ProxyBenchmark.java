@@ -38,6 +38,7 @@ import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.options.Options;
@@ -130,7 +131,7 @@ public class ProxyBenchmark {
         return raw.echo("test");
     }
 
-    // @Benchmark
+    @Benchmark
     public String instrumentedWithoutHandlers() {
         return instrumentedWithoutHandlers.echo("test");
     }
@@ -145,12 +146,18 @@ public class ProxyBenchmark {
         return instrumentedWithMetrics.echo("test");
     }
 
+    @Benchmark
+    @Threads(4)
+    public String instrumentedWithMetricsContended() {
+        return instrumentedWithMetrics.echo("test");
+    }
+
     @Benchmark
     public String instrumentedWithTracing() {
         return instrumentedWithTracing.echo("test");
     }
 
-    // @Benchmark
+    @Benchmark
     public String instrumentedWithRemoting() {
         return instrumentedWithRemoting.echo("test");
     }
@@ -0,0 +1,80 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.microbenchmarks;
+
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.event.metrics.TaggedMetricsServiceInvocationEventHandler;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.proxy.Instrumentation;
+import com.palantir.tritium.proxy.Proxies;
+import java.lang.reflect.InvocationHandler;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how quickly instrumented proxies can be created for short-lived delegates, once their proxy classes have
+ * been generated.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings({"designforextension", "NullAway"})
+public class ProxyCreationBenchmark {
+
+    private final ProxyBenchmark.Service delegate = input -> input;
+    private final InvocationHandler invocationHandler = (proxy, method, args) -> method.invoke(delegate, args);
+
+    private InvocationEventHandler<InvocationContext> handler;
+
+    @Setup
+    public void before() {
+        handler = new TaggedMetricsServiceInvocationEventHandler(new DefaultTaggedMetricRegistry(), "jmh");
+    }
+
+    @Benchmark
+    public ProxyBenchmark.Service jdkProxy() {
+        return Proxies.newProxy(ProxyBenchmark.Service.class, delegate, invocationHandler);
+    }
+
+    @Benchmark
+    public ProxyBenchmark.Service instrumented() {
+        return Instrumentation.builder(ProxyBenchmark.Service.class, delegate)
+                .withHandler(handler)
+                .build();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ProxyBenchmark.Service instrumentedContended() {
+        return instrumented();
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.microbenchmarks;
+
+import com.palantir.tritium.metrics.MetricRegistries;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of instrumented {@link SSLEngine}s on {@link SSLEngine#wrap} and {@link SSLEngine#unwrap}
+ * once the handshake has completed. Each thread owns a connected client and server engine pair, exchanging one record
+ * per invocation in memory.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+@SuppressWarnings({"designforextension", "NullAway"})
+public class SslEngineBenchmark {
+
+    private static final String PROTOCOL = "TLSv1.2";
+
+    @Param({"false", "true"})
+    private boolean instrumented;
+
+    @Param({"64", "8192"})
+    private int payloadSize;
+
+    private SSLEngine client;
+    private SSLEngine server;
+    private ByteBuffer clientApplication;
+    private ByteBuffer serverApplication;
+    private ByteBuffer network;
+
+    @Setup
+    public void before() throws IOException, GeneralSecurityException {
+        SSLContext clientContext = newSslContext("client_keystore.jks", "clientStore");
+        SSLContext serverContext = newSslContext("server_keystore.jks", "serverStore");
+        if (instrumented) {
+            TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+            clientContext = MetricRegistries.instrument(registry, clientContext, "client");
+            serverContext = MetricRegistries.instrument(registry, serverContext, "server");
+        }
+
+        client = clientContext.createSSLEngine("localhost", 443);
+        client.setUseClientMode(true);
+        server = serverContext.createSSLEngine();
+        server.setUseClientMode(false);
+
+        clientApplication = ByteBuffer.allocate(client.getSession().getApplicationBufferSize());
+        serverApplication = ByteBuffer.allocate(server.getSession().getApplicationBufferSize());
+        network = ByteBuffer.allocate(Math.max(
+                client.getSession().getPacketBufferSize(),
+                server.getSession().getPacketBufferSize()));
+        handshake();
+    }
+
+    @Benchmark
+    public int wrapUnwrap() throws SSLException {
+        clientApplication.clear().limit(payloadSize);
+        network.clear();
+        client.wrap(clientApplication, network);
+        network.flip();
+        serverApplication.clear();
+        return server.unwrap(network, serverApplication).bytesProduced();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int wrapUnwrapContended() throws SSLException {
+        return wrapUnwrap();
+    }
+
+    private void handshake() throws SSLException {
+        client.beginHandshake();
+        server.beginHandshake();
+        ByteBuffer clientToServer = ByteBuffer.allocate(network.capacity());
+        ByteBuffer serverToClient = ByteBuffer.allocate(network.capacity());
+        while (isHandshaking(client) || isHandshaking(server)) {
+            step(client, serverToClient, clientToServer, clientApplication);
+            step(server, clientToServer, serverToClient, serverApplication);
+        }
+    }
+
+    private static void step(SSLEngine engine, ByteBuffer inbound, ByteBuffer outbound, ByteBuffer application)
+            throws SSLException {
+        switch (engine.getHandshakeStatus()) {
+            case NEED_WRAP:
+                application.clear().flip();
+                engine.wrap(application, outbound);
+                break;
+            case NEED_UNWRAP:
+                inbound.flip();
+                application.clear();
+                SSLEngineResult result = engine.unwrap(inbound, application);
+                inbound.compact();
+                if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW && inbound.position() == 0) {
+                    // nothing to read until the peer has written
+                    return;
+                }
+                break;
+            case NEED_TASK:
+                Runnable task;
+                while ((task = engine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static boolean isHandshaking(SSLEngine engine) {
+        SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+        return status != SSLEngineResult.HandshakeStatus.FINISHED
+                && status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING;
+    }
+
+    private static SSLContext newSslContext(String keyStoreName, String password)
+            throws IOException, GeneralSecurityException {
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(loadKeyStore(keyStoreName, password), password.toCharArray());
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(loadKeyStore("truststore.jks", "caStore"));
+
+        SSLContext context = SSLContext.getInstance(PROTOCOL);
+        context.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+        return context;
+    }
+
+    private static KeyStore loadKeyStore(String name, String password) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream stream = SslEngineBenchmark.class.getClassLoader().getResourceAsStream(name)) {
+            keyStore.load(stream, password.toCharArray());
+        }
+        return keyStore;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.microbenchmarks;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
+import com.codahale.metrics.Timer;
+import com.palantir.tritium.metrics.registry.StripedMeter;
+import com.palantir.tritium.metrics.registry.StripedTimer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures contended updates of a single shared {@link Meter} and {@link Timer}. Run {@link #main} to scale the
+ * number of updating threads from 1 to 64.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings({"designforextension", "NullAway"})
+public class StripedMetricsBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+    public enum MetricType {
+        DROPWIZARD(Meter::new, () -> new Timer(new SlidingTimeWindowArrayReservoir(35, TimeUnit.SECONDS))),
+        STRIPED(StripedMeter::new, () -> new StripedTimer(new SlidingTimeWindowArrayReservoir(35, TimeUnit.SECONDS)));
+
+        private final Supplier<Meter> meterSupplier;
+        private final Supplier<Timer> timerSupplier;
+
+        MetricType(Supplier<Meter> meterSupplier, Supplier<Timer> timerSupplier) {
+            this.meterSupplier = meterSupplier;
+            this.timerSupplier = timerSupplier;
+        }
+    }
+
+    @Param
+    private MetricType metricType;
+
+    private Meter meter;
+    private Timer timer;
+
+    @Setup
+    public void before() {
+        meter = metricType.meterSupplier.get();
+        timer = metricType.timerSupplier.get();
+    }
+
+    @Benchmark
+    public void mark() {
+        meter.mark();
+    }
+
+    @Benchmark
+    public void update() {
+        timer.update(1234, TimeUnit.NANOSECONDS);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int threads : THREAD_COUNTS) {
+            Options options = new OptionsBuilder()
+                    .include(StripedMetricsBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
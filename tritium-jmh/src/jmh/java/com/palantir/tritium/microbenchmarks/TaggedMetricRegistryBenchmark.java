@@ -0,0 +1,144 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.microbenchmarks;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.HdrSlidingWindowTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.SlidingWindowTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures tagged metric lookups and updates, and iterating the registry the way reporters do, for each
+ * {@link TaggedMetricRegistry} flavor as the number of registered metrics grows.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings({"designforextension", "NullAway"})
+public class TaggedMetricRegistryBenchmark {
+
+    public enum RegistryType {
+        DEFAULT(DefaultTaggedMetricRegistry::new),
+        SLIDING_WINDOW(() -> new SlidingWindowTaggedMetricRegistry(35, TimeUnit.SECONDS)),
+        HDR_SLIDING_WINDOW(() -> new HdrSlidingWindowTaggedMetricRegistry(35, TimeUnit.SECONDS));
+
+        private final Supplier<TaggedMetricRegistry> registrySupplier;
+
+        RegistryType(Supplier<TaggedMetricRegistry> registrySupplier) {
+            this.registrySupplier = registrySupplier;
+        }
+    }
+
+    @Param
+    private RegistryType registryType;
+
+    @Param({"10", "10000"})
+    private int registrySize;
+
+    private TaggedMetricRegistry registry;
+    private MetricName timerName;
+    private Timer timer;
+
+    @Setup
+    public void before() {
+        registry = registryType.registrySupplier.get();
+        TaggedMetricRegistry child = registryType.registrySupplier.get();
+        for (int i = 0; i < registrySize; i++) {
+            MetricName name = MetricName.builder()
+                    .safeName("timer")
+                    .putSafeTags("index", Integer.toString(i))
+                    .build();
+            registry.timer(name).update(i, TimeUnit.MILLISECONDS);
+            child.meter(name).mark();
+        }
+        registry.addMetrics("child", "jmh", child);
+        timerName = MetricName.builder()
+                .safeName("timer")
+                .putSafeTags("index", Integer.toString(registrySize / 2))
+                .build();
+        timer = registry.timer(timerName);
+    }
+
+    @Benchmark
+    public Timer timerLookup() {
+        return registry.timer(timerName);
+    }
+
+    @Benchmark
+    public void timerUpdate() {
+        timer.update(1234, TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void timerUpdateContended() {
+        timer.update(1234, TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Timer timerLookupContended() {
+        return registry.timer(timerName);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map<MetricName, Metric> getMetrics() {
+        return registry.getMetrics();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void forEachMetric(Blackhole blackhole) {
+        registry.forEachMetric((name, metric) -> {
+            blackhole.consume(name);
+            blackhole.consume(metric);
+        });
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double snapshot() {
+        return timer.getSnapshot().get99thPercentile();
+    }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.proxy;
+
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.palantir.logsafe.SafeArg;
+import com.palantir.logsafe.exceptions.SafeIllegalArgumentException;
+import com.palantir.logsafe.exceptions.SafeIllegalStateException;
+import com.palantir.tritium.api.event.InstrumentationFilter;
+import com.palantir.tritium.event.InvocationEventHandler;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.TypeCache;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.modifier.FieldManifestation;
+import net.bytebuddy.description.modifier.Ownership;
+import net.bytebuddy.description.modifier.TypeManifestation;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.dynamic.loading.MultipleParentClassLoader;
+import net.bytebuddy.dynamic.scaffold.TypeValidation;
+import net.bytebuddy.dynamic.scaffold.subclass.ConstructorStrategy;
+import net.bytebuddy.implementation.FieldAccessor;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.implementation.MethodCall;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import net.bytebuddy.matcher.ElementMatchers;
+
+/**
+ * Generates instrumentation proxy classes that invoke the delegate directly rather than reflectively via
+ * {@link java.lang.reflect.Proxy} and {@link Method#invoke}.
+ * <p>
+ * One class is generated per distinct set of proxied interfaces. Each generated method looks up its {@link Method}
+ * from a precomputed table, notifies the {@link InvocationEventHandler} if instrumentation is enabled, and calls
+ * the delegate with an ordinary interface invocation.
+ */
+public final class ByteBuddyInstrumentation {
+
+    static final String DELEGATE_FIELD = "delegate";
+    static final String HANDLER_FIELD = "invocationEventHandler";
+    static final String FILTER_FIELD = "instrumentationFilter";
+    static final String METHODS_FIELD = "methods";
+
+    private static final String CLASS_NAME_PREFIX = "com.palantir.tritium.proxy.Instrumented";
+
+    private static final TypeCache<List<String>> proxyClasses = new TypeCache<>(TypeCache.Sort.WEAK);
+    private static final AtomicInteger proxyClassCounter = new AtomicInteger();
+    private static final ProxyTypeCache<Boolean> supportedTypes = new ProxyTypeCache<>(
+            (iface, delegateClass) -> areAllPublic(Proxies.interfaces(iface, delegateClass)));
+    private static final ProxyTypeCache<Constructor<?>> proxyConstructors = new ProxyTypeCache<>(
+            ByteBuddyInstrumentation::proxyConstructor);
+
+    private ByteBuddyInstrumentation() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Creates a new instrumented proxy for the specified delegate.
+     *
+     * @param iface main interface to proxy
+     * @param delegate delegate instance whose interfaces to proxy
+     * @param handler invocation event handler
+     * @param filter instrumentation filter
+     * @return a new proxy instance that implements the specified interface as well as all the
+     *         interfaces from the delegate class
+     * @throws IllegalArgumentException if any of the proxied interfaces is not {@link #isSupported supported}
+     */
+    public static <T, U extends T> T instrument(
+            Class<T> iface,
+            U delegate,
+            InvocationEventHandler<?> handler,
+            InstrumentationFilter filter) {
+        checkNotNull(iface, "interface");
+        checkNotNull(delegate, "delegate");
+        checkNotNull(handler, "handler");
+        checkNotNull(filter, "filter");
+
+        Constructor<?> constructor = proxyConstructors.get(iface, delegate.getClass());
+        try {
+            return iface.cast(constructor.newInstance(delegate, handler, filter));
+        } catch (ReflectiveOperationException e) {
+            throw new SafeIllegalStateException("Failed to create instrumentation proxy", e,
+                    SafeArg.of("interface", iface.getName()));
+        }
+    }
+
+    private static Constructor<?> proxyConstructor(Class<?> iface, Class<?> delegateClass) {
+        Class<?>[] interfaces = Proxies.interfaces(iface, delegateClass);
+        checkAllPublic(interfaces);
+        Class<?> proxyClass = proxyClass(delegateClass.getClassLoader(), interfaces);
+        try {
+            return proxyClass.getConstructor(Object.class, InvocationEventHandler.class, InstrumentationFilter.class);
+        } catch (NoSuchMethodException e) {
+            throw new SafeIllegalStateException("Failed to find instrumentation proxy constructor", e,
+                    SafeArg.of("interface", iface.getName()));
+        }
+    }
+
+    /**
+     * Returns true if a proxy class can be generated for the specified interface and delegate class. Generated
+     * classes are defined in their own class loader, so every proxied interface must be publicly accessible. The
+     * result is cached per interface and delegate class.
+     *
+     * @param iface main interface to proxy
+     * @param delegateClass delegate class whose interfaces to proxy
+     * @return true if {@link #instrument} supports the specified types
+     */
+    public static boolean isSupported(Class<?> iface, Class<?> delegateClass) {
+        return supportedTypes.get(iface, delegateClass);
+    }
+
+    private static boolean areAllPublic(Class<?>[] interfaces) {
+        for (Class<?> proxiedInterface : interfaces) {
+            if (!isPublic(proxiedInterface)) {
+                return false;
+            }
+        }
+        for (Method method : instrumentedMethods(interfaces)) {
+            if (!isPublic(method.getDeclaringClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+            if (!Modifier.isPublic(current.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkAllPublic(Class<?>[] interfaces) {
+        if (!areAllPublic(interfaces)) {
+            throw new SafeIllegalArgumentException("All proxied interfaces must be public",
+                    SafeArg.of("interfaces", Arrays.toString(interfaces)));
+        }
+    }
+
+    private static Class<?> proxyClass(@Nullable ClassLoader classLoader, Class<?>[] interfaces) {
+        List<String> key = new ArrayList<>(interfaces.length);
+        for (Class<?> proxiedInterface : interfaces) {
+            key.add(proxiedInterface.getName());
+        }
+        return proxyClasses.findOrInsert(classLoader, key, () -> generateProxyClass(interfaces), proxyClasses);
+    }
+
+    private static Class<?> generateProxyClass(Class<?>[] interfaces) throws ReflectiveOperationException {
+        List<Method> methods = instrumentedMethods(interfaces);
+        DynamicType.Builder<Object> builder = new ByteBuddy()
+                .with(TypeValidation.DISABLED)
+                .subclass(Object.class, ConstructorStrategy.Default.NO_CONSTRUCTORS)
+                .name(CLASS_NAME_PREFIX + interfaces[0].getSimpleName() + "$" + proxyClassCounter.incrementAndGet())
+                .implement(interfaces)
+                .modifiers(Visibility.PUBLIC, TypeManifestation.FINAL)
+                .defineField(DELEGATE_FIELD, Object.class, Visibility.PRIVATE, FieldManifestation.FINAL)
+                .defineField(HANDLER_FIELD, InvocationEventHandler.class, Visibility.PRIVATE, FieldManifestation.FINAL)
+                .defineField(FILTER_FIELD, InstrumentationFilter.class, Visibility.PRIVATE, FieldManifestation.FINAL)
+                .defineField(METHODS_FIELD, Method[].class, Visibility.PRIVATE, Ownership.STATIC)
+                .method(ElementMatchers.isToString())
+                .intercept(MethodCall.invoke(Object.class.getMethod("toString")).onField(DELEGATE_FIELD));
+
+        // the delegate is invoked through a field typed as each method's declaring interface to avoid casts
+        Map<Class<?>, String> typedDelegateFields = new LinkedHashMap<>();
+        for (Method method : methods) {
+            Class<?> declaringClass = method.getDeclaringClass();
+            if (!typedDelegateFields.containsKey(declaringClass)) {
+                String fieldName = DELEGATE_FIELD + "$" + typedDelegateFields.size();
+                typedDelegateFields.put(declaringClass, fieldName);
+                builder = builder.defineField(fieldName, declaringClass, Visibility.PRIVATE, FieldManifestation.FINAL);
+            }
+        }
+
+        Implementation.Composable constructor = MethodCall.invoke(Object.class.getConstructor())
+                .andThen(FieldAccessor.ofField(DELEGATE_FIELD).setsArgumentAt(0))
+                .andThen(FieldAccessor.ofField(HANDLER_FIELD).setsArgumentAt(1))
+                .andThen(FieldAccessor.ofField(FILTER_FIELD).setsArgumentAt(2));
+        for (String fieldName : typedDelegateFields.values()) {
+            constructor = constructor.andThen(FieldAccessor.ofField(fieldName)
+                    .withAssigner(Assigner.DEFAULT, Assigner.Typing.DYNAMIC)
+                    .setsArgumentAt(0));
+        }
+        builder = builder.defineConstructor(Visibility.PUBLIC)
+                .withParameters(Object.class, InvocationEventHandler.class, InstrumentationFilter.class)
+                .intercept(constructor);
+
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            builder = builder
+                    .method(ElementMatchers.named(method.getName())
+                            .and(ElementMatchers.takesArguments(method.getParameterTypes())))
+                    .intercept(Advice.withCustomMapping()
+                            .bind(MethodIndex.class, i)
+                            .to(ByteBuddyInstrumentationAdvice.class)
+                            .wrap(MethodCall.invokeSelf()
+                                    .onField(typedDelegateFields.get(method.getDeclaringClass()))
+                                    .withAllArguments()
+                                    .withAssigner(Assigner.DEFAULT, Assigner.Typing.DYNAMIC)));
+        }
+
+        ClassLoader classLoader = new MultipleParentClassLoader.Builder()
+                .append(interfaces)
+                .append(ByteBuddyInstrumentation.class)
+                .build();
+        Class<?> proxyClass = builder.make()
+                .load(classLoader, ClassLoadingStrategy.Default.WRAPPER)
+                .getLoaded();
+        Field methodsField = proxyClass.getDeclaredField(METHODS_FIELD);
+        methodsField.setAccessible(true);
+        methodsField.set(null, methods.toArray(new Method[0]));
+        return proxyClass;
+    }
+
+    /**
+     * Returns the methods to instrument, matching the {@link Method} instances {@link java.lang.reflect.Proxy} would
+     * pass to its invocation handler: the first declaration found in interface order wins, and methods inherited
+     * from {@link Object} are not instrumented.
+     */
+    static List<Method> instrumentedMethods(Class<?>[] interfaces) {
+        Map<List<Object>, Method> methods = new LinkedHashMap<>();
+        for (Class<?> proxiedInterface : interfaces) {
+            for (Method method : proxiedInterface.getMethods()) {
+                if (!Modifier.isStatic(method.getModifiers()) && !isObjectMethod(method)) {
+                    methods.putIfAbsent(Arrays.asList(method.getName(),
+                            Arrays.asList(method.getParameterTypes())), method);
+                }
+            }
+        }
+        return new ArrayList<>(methods.values());
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+}
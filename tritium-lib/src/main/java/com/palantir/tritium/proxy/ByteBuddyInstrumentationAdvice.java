@@ -0,0 +1,77 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.proxy;
+
+import com.palantir.tritium.api.event.InstrumentationFilter;
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import java.lang.reflect.Method;
+import javax.annotation.Nullable;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+
+/**
+ * Advice inlined into every method of classes generated by {@link ByteBuddyInstrumentation}. The advice methods are
+ * copied into generated classes which live in a different class loader, so everything they call must be public.
+ * Handler and filter failures are handled by {@link InvocationEvents}, exactly as for {@link InvocationEventProxy}.
+ */
+final class ByteBuddyInstrumentationAdvice {
+
+    private ByteBuddyInstrumentationAdvice() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Nullable
+    @Advice.OnMethodEnter
+    @SuppressWarnings("unused") // used by generated code
+    static InvocationContext enter(
+            @Advice.This Object proxy,
+            @Advice.FieldValue(ByteBuddyInstrumentation.HANDLER_FIELD) InvocationEventHandler<?> eventHandler,
+            @Advice.FieldValue(ByteBuddyInstrumentation.FILTER_FIELD) InstrumentationFilter filter,
+            @Advice.FieldValue(ByteBuddyInstrumentation.METHODS_FIELD) Method[] methods,
+            @MethodIndex int index,
+            @Advice.AllArguments Object[] args) {
+        Method method = methods[index];
+        if (!InvocationEvents.isEnabled(eventHandler, proxy, method)) {
+            return null;
+        }
+        // inlined advice builds the argument array, boxing primitives, each time args is read, so only read it once
+        // the handler is known to be enabled
+        Object[] arguments = args;
+        if (!InvocationEvents.shouldInstrument(filter, proxy, method, arguments)) {
+            return null;
+        }
+        return InvocationEvents.preInvocation(eventHandler, proxy, method, arguments);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    @SuppressWarnings("unused") // used by generated code
+    static void exit(
+            @Advice.FieldValue(ByteBuddyInstrumentation.HANDLER_FIELD) InvocationEventHandler<?> eventHandler,
+            @Advice.Enter @Nullable InvocationContext context,
+            @Advice.Return(typing = Assigner.Typing.DYNAMIC) @Nullable Object result,
+            @Advice.Thrown @Nullable Throwable thrown) {
+        if (context != null) {
+            if (thrown == null) {
+                InvocationEvents.onSuccess(eventHandler, context, result);
+            } else {
+                InvocationEvents.onFailure(eventHandler, context, thrown);
+            }
+        }
+    }
+
+}
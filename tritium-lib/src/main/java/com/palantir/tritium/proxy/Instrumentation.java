@@ -21,7 +21,9 @@ import static com.palantir.logsafe.Preconditions.checkNotNull;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.palantir.logsafe.exceptions.SafeIllegalStateException;
 import com.palantir.tritium.api.event.InstrumentationFilter;
+import com.palantir.tritium.event.FilteredInvocationEventHandler;
 import com.palantir.tritium.event.InstrumentationFilters;
 import com.palantir.tritium.event.InvocationContext;
 import com.palantir.tritium.event.InvocationEventHandler;
@@ -33,6 +35,7 @@ import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.LongPredicate;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,15 +55,8 @@ public final class Instrumentation {
 
         checkNotNull(interfaceClass, "interfaceClass");
         checkNotNull(delegate, "delegate");
-        checkNotNull(instrumentationFilter, "instrumentationFilter");
-        checkNotNull(handlers, "handlers");
-
-        if (handlers.isEmpty() || instrumentationFilter == InstrumentationFilters.INSTRUMENT_NONE) {
-            return delegate;
-        }
-
-        return Proxies.newProxy(interfaceClass, delegate,
-                new InstrumentationProxy<>(instrumentationFilter, handlers, delegate));
+        return new InstrumentationTemplate<T, U>(interfaceClass, delegate.getClass(), handlers, instrumentationFilter)
+                .instrument(delegate);
     }
 
     /**
@@ -99,21 +95,37 @@ public final class Instrumentation {
     }
 
     public static <T, U extends T> Builder<T, U> builder(Class<T> interfaceClass, U delegate) {
-        return new Builder<>(interfaceClass, delegate);
+        checkNotNull(delegate, "delegate");
+        return new Builder<>(interfaceClass, delegate.getClass(), delegate);
+    }
+
+    /**
+     * Returns a builder for an {@link InstrumentationTemplate} which instruments delegates of the specified class.
+     * Use {@link Builder#buildTemplate()} to build the template.
+     *
+     * @param interfaceClass service interface
+     * @param delegateClass class of the delegates to instrument
+     * @return template builder
+     */
+    public static <T, U extends T> Builder<T, U> templateBuilder(Class<T> interfaceClass, Class<U> delegateClass) {
+        return new Builder<>(interfaceClass, delegateClass, null);
     }
 
     @SuppressWarnings("WeakerAccess") // intended for public consumption
     public static final class Builder<T, U extends T> {
 
         private final Class<T> interfaceClass;
+        private final Class<?> delegateClass;
+        @Nullable
         private final U delegate;
         private final ImmutableList.Builder<InvocationEventHandler<InvocationContext>> handlers = ImmutableList
                 .builder();
         private InstrumentationFilter filter = InstrumentationFilters.INSTRUMENT_ALL;
 
-        private Builder(Class<T> interfaceClass, U delegate) {
+        private Builder(Class<T> interfaceClass, Class<?> delegateClass, @Nullable U delegate) {
             this.interfaceClass = checkNotNull(interfaceClass, "class");
-            this.delegate = checkNotNull(delegate, "delegate");
+            this.delegateClass = checkNotNull(delegateClass, "delegateClass");
+            this.delegate = delegate;
         }
 
         /**
@@ -127,7 +139,7 @@ public final class Instrumentation {
             checkNotNull(metricRegistry, "metricRegistry");
             this.handlers.add(new MetricsInvocationEventHandler(
                     metricRegistry,
-                    delegate.getClass(),
+                    delegateClass,
                     MetricRegistry.name(interfaceClass.getName()),
                     globalPrefix));
             return this;
@@ -188,6 +200,21 @@ public final class Instrumentation {
             return withHandlers(Collections.singleton(handler));
         }
 
+        /**
+         * Adds a handler which only handles invocations accepted by the specified filter, in addition to the filter
+         * applied to the whole proxy by {@link #withFilter}. This allows, for example, sampling tracing or logging
+         * with {@link InstrumentationFilters#rateLimited(double)} while metrics record every invocation.
+         *
+         * @param handler handler to add
+         * @param handlerFilter filter deciding which invocations are passed to the handler
+         * @return - InstrumentationBuilder
+         */
+        public Builder<T, U> withHandler(
+                InvocationEventHandler<InvocationContext> handler,
+                InstrumentationFilter handlerFilter) {
+            return withHandler(FilteredInvocationEventHandler.of(handler, handlerFilter));
+        }
+
         public Builder<T, U> withHandlers(Iterable<InvocationEventHandler<InvocationContext>> additionalHandlers) {
             checkNotNull(additionalHandlers, "additionalHandlers");
             this.handlers.addAll(additionalHandlers);
@@ -200,7 +227,21 @@ public final class Instrumentation {
         }
 
         public T build() {
-            return wrap(interfaceClass, delegate, handlers.build(), filter);
+            U target = delegate;
+            if (target == null) {
+                throw new SafeIllegalStateException("Template builders have no delegate, use buildTemplate()");
+            }
+            return buildTemplate().instrument(target);
+        }
+
+        /**
+         * Builds a template which instruments delegates of this builder's delegate class with the configured
+         * handlers and filter, sharing the handlers between all of the resulting proxies.
+         *
+         * @return instrumentation template
+         */
+        public InstrumentationTemplate<T, U> buildTemplate() {
+            return new InstrumentationTemplate<>(interfaceClass, delegateClass, handlers.build(), filter);
         }
     }
 
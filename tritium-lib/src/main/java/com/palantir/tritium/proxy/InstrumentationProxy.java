@@ -31,6 +31,12 @@ class InstrumentationProxy<T> extends InvocationEventProxy {
         this.delegate = delegate;
     }
 
+    InstrumentationProxy(InstrumentationFilter instrumentationFilter,
+            InvocationEventHandler<?> eventHandler, T delegate) {
+        super(eventHandler, instrumentationFilter);
+        this.delegate = delegate;
+    }
+
     @Override
     T getDelegate() {
         return delegate;
@@ -0,0 +1,112 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.proxy;
+
+import static com.palantir.logsafe.Preconditions.checkArgument;
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.logsafe.SafeArg;
+import com.palantir.tritium.api.event.InstrumentationFilter;
+import com.palantir.tritium.event.CompositeInvocationEventHandler;
+import com.palantir.tritium.event.InstrumentationFilters;
+import com.palantir.tritium.event.InstrumentationProperties;
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Instrumentation compiled once for a service interface and delegate class, which can then instrument any number of
+ * delegates of that class.
+ * <p>
+ * Handlers, including the method group mappings of metrics handlers, and the proxy class are created when the
+ * template is built and shared by every proxy it creates, so {@link #instrument(Object)} only allocates the proxy
+ * itself. This makes it suitable for instrumenting short-lived delegates, e.g. per-tenant or per-request objects.
+ *
+ * @param <T> service interface
+ * @param <U> delegate type
+ */
+public final class InstrumentationTemplate<T, U extends T> {
+
+    private static final Logger log = LoggerFactory.getLogger(InstrumentationTemplate.class);
+
+    private final Class<T> interfaceClass;
+    private final Class<?> delegateClass;
+    private final List<InvocationEventHandler<InvocationContext>> handlers;
+    private final InvocationEventHandler<InvocationContext> eventHandler;
+    private final InstrumentationFilter filter;
+    private final boolean instrumented;
+    private volatile boolean byteBuddy;
+
+    InstrumentationTemplate(
+            Class<T> interfaceClass,
+            Class<?> delegateClass,
+            List<InvocationEventHandler<InvocationContext>> handlers,
+            InstrumentationFilter filter) {
+        this.interfaceClass = checkNotNull(interfaceClass, "interfaceClass");
+        this.delegateClass = checkNotNull(delegateClass, "delegateClass");
+        this.handlers = ImmutableList.copyOf(checkNotNull(handlers, "handlers"));
+        this.filter = checkNotNull(filter, "instrumentationFilter");
+        this.eventHandler = CompositeInvocationEventHandler.of(this.handlers);
+        this.instrumented = !this.handlers.isEmpty() && filter != InstrumentationFilters.INSTRUMENT_NONE;
+        this.byteBuddy = !InstrumentationProperties.isSpecificEnabled("dynamic-proxy", false)
+                && ByteBuddyInstrumentation.isSupported(interfaceClass, delegateClass);
+    }
+
+    /**
+     * Returns an instrumented proxy of the specified delegate, which must be an instance of exactly the delegate class
+     * this template was built for.
+     *
+     * @param delegate delegate to instrument
+     * @return instrumented proxy implementing the service interface, or the delegate itself if there is nothing to
+     *         instrument
+     */
+    public T instrument(U delegate) {
+        checkNotNull(delegate, "delegate");
+        checkArgument(delegate.getClass() == delegateClass, "Delegate class does not match template",
+                SafeArg.of("expectedClass", delegateClass.getName()),
+                SafeArg.of("actualClass", delegate.getClass().getName()));
+
+        if (!instrumented) {
+            return delegate;
+        }
+
+        if (byteBuddy) {
+            try {
+                return ByteBuddyInstrumentation.instrument(interfaceClass, delegate, eventHandler, filter);
+            } catch (RuntimeException e) {
+                // avoid retrying proxy class generation for every delegate once it has failed
+                byteBuddy = false;
+                log.warn("Failed to generate instrumentation proxy for {}, falling back to dynamic proxy",
+                        SafeArg.of("interface", interfaceClass.getName()), e);
+            }
+        }
+
+        return Proxies.newProxy(interfaceClass, delegate, new InstrumentationProxy<>(filter, eventHandler, delegate));
+    }
+
+    @Override
+    public String toString() {
+        return "InstrumentationTemplate{interfaceClass=" + interfaceClass.getName()
+                + ", delegateClass=" + delegateClass.getName()
+                + ", handlers=" + handlers
+                + ", filter=" + filter + '}';
+    }
+
+}
@@ -20,9 +20,6 @@ import static com.palantir.logsafe.Preconditions.checkNotNull;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.reflect.AbstractInvocationHandler;
-import com.google.errorprone.annotations.CompileTimeConstant;
-import com.palantir.logsafe.SafeArg;
-import com.palantir.logsafe.UnsafeArg;
 import com.palantir.tritium.api.event.InstrumentationFilter;
 import com.palantir.tritium.event.CompositeInvocationEventHandler;
 import com.palantir.tritium.event.InstrumentationFilters;
@@ -34,13 +31,9 @@ import java.lang.reflect.Method;
 import java.util.List;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 abstract class InvocationEventProxy extends AbstractInvocationHandler implements InvocationHandler {
 
-    private static final Logger logger = LoggerFactory.getLogger(InvocationEventProxy.class);
-
     private final InstrumentationFilter filter;
     private final InvocationEventHandler<?> eventHandler;
 
@@ -55,10 +48,18 @@ abstract class InvocationEventProxy extends AbstractInvocationHandler implements
 
     protected InvocationEventProxy(List<InvocationEventHandler<InvocationContext>> handlers,
                                    InstrumentationFilter filter) {
-        checkNotNull(filter, "filter");
-        checkNotNull(handlers, "handlers");
-        this.eventHandler = CompositeInvocationEventHandler.of(handlers);
-        this.filter = filter;
+        this(CompositeInvocationEventHandler.of(checkNotNull(handlers, "handlers")), filter);
+    }
+
+    /**
+     * Instrumentation proxy sharing an already composed event handler with other proxies.
+     *
+     * @param eventHandler event handler
+     * @param filter instrumentation filter
+     */
+    InvocationEventProxy(InvocationEventHandler<?> eventHandler, InstrumentationFilter filter) {
+        this.eventHandler = checkNotNull(eventHandler, "eventHandler");
+        this.filter = checkNotNull(filter, "filter");
     }
 
     /**
@@ -79,13 +80,8 @@ abstract class InvocationEventProxy extends AbstractInvocationHandler implements
      * @return whether instrumentation handling is enabled
      */
     private boolean isEnabled(Object instance, Method method, Object[] args) {
-        try {
-            return eventHandler.isEnabled()
-                    && filter.shouldInstrument(instance, method, args);
-        } catch (Throwable t) {
-            logInvocationWarning("isEnabled", instance, method, t);
-            return false;
-        }
+        return InvocationEvents.isEnabled(eventHandler, instance, method)
+                && InvocationEvents.shouldInstrument(filter, instance, method, args);
     }
 
     @Override
@@ -126,12 +122,7 @@ abstract class InvocationEventProxy extends AbstractInvocationHandler implements
     @Nullable
     @VisibleForTesting
     final InvocationContext handlePreInvocation(Object instance, Method method, Object[] args) {
-        try {
-            return eventHandler.preInvocation(instance, method, args);
-        } catch (RuntimeException e) {
-            logInvocationWarning("preInvocation", instance, method, e);
-        }
-        return null;
+        return InvocationEvents.preInvocation(eventHandler, instance, method, args);
     }
 
     @Nullable
@@ -155,11 +146,7 @@ abstract class InvocationEventProxy extends AbstractInvocationHandler implements
     @Nullable
     @VisibleForTesting
     final Object handleOnSuccess(@Nullable InvocationContext context, @Nullable Object result) {
-        try {
-            eventHandler.onSuccess(context, result);
-        } catch (RuntimeException e) {
-            logInvocationWarningOnSuccess(context, result, e);
-        }
+        InvocationEvents.onSuccess(eventHandler, context, result);
         return result;
     }
 
@@ -171,62 +158,8 @@ abstract class InvocationEventProxy extends AbstractInvocationHandler implements
     }
 
     final Throwable handleOnFailure(@Nullable InvocationContext context, Throwable cause) {
-        try {
-            eventHandler.onFailure(context, cause);
-        } catch (RuntimeException e) {
-            logInvocationWarningOnFailure(context, cause, e);
-        }
+        InvocationEvents.onFailure(eventHandler, context, cause);
         return cause;
     }
 
-    private static void logInvocationWarningOnSuccess(
-            @Nullable InvocationContext context,
-            @Nullable Object result,
-            Exception cause) {
-        logInvocationWarning("onSuccess", context, result, cause);
-    }
-
-    private static void logInvocationWarningOnFailure(
-            @Nullable InvocationContext context,
-            @Nullable Throwable result,
-            Exception cause) {
-        logInvocationWarning("onFailure", context, result, cause);
-    }
-
-    private static SafeArg<String> safeSimpleClassName(@CompileTimeConstant String name, @Nullable Object object) {
-        return SafeArg.of(name, (object == null) ? "null" : object.getClass().getSimpleName());
-    }
-
-    static void logInvocationWarning(
-            String event,
-            @Nullable InvocationContext context,
-            @Nullable Object result,
-            Throwable cause) {
-        if (logger.isWarnEnabled()) {
-            logger.warn("{} occurred handling '{}' ({}, {}): {}",
-                    safeSimpleClassName("cause", cause),
-                    SafeArg.of("event", event),
-                    UnsafeArg.of("context", context),
-                    safeSimpleClassName("result", result),
-                    cause);
-        }
-    }
-
-    static void logInvocationWarning(
-            String event,
-            Object instance,
-            Method method,
-            Throwable cause) {
-        if (logger.isWarnEnabled()) {
-            logger.warn("{} occurred handling '{}' invocation of {} {} on {} instance: {}",
-                    safeSimpleClassName("cause", cause),
-                    SafeArg.of("event", event),
-                    SafeArg.of("class", method.getDeclaringClass().getName()),
-                    SafeArg.of("method", method),
-                    safeSimpleClassName("instanceClass", instance),
-                    UnsafeArg.of("instance", instance),
-                    cause);
-        }
-    }
-
 }
@@ -0,0 +1,144 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.proxy;
+
+import com.google.errorprone.annotations.CompileTimeConstant;
+import com.palantir.logsafe.SafeArg;
+import com.palantir.logsafe.UnsafeArg;
+import com.palantir.tritium.api.event.InstrumentationFilter;
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import java.lang.reflect.Method;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Notifies an {@link InvocationEventHandler} of an invocation, logging rather than propagating any failure of the
+ * handler or filter so instrumentation never changes the outcome of the instrumented call.
+ * <p>
+ * Shared by {@link InvocationEventProxy} and the classes generated by {@link ByteBuddyInstrumentation}. Generated
+ * classes are defined in their own class loader, so these methods must be public; they are not intended for use
+ * outside of Tritium.
+ */
+public final class InvocationEvents {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvocationEvents.class);
+
+    private InvocationEvents() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Returns whether the handler is enabled, treating a failing check as disabled. */
+    public static boolean isEnabled(InvocationEventHandler<?> eventHandler, Object instance, Method method) {
+        try {
+            return eventHandler.isEnabled();
+        } catch (Throwable t) {
+            logInvocationWarning("isEnabled", instance, method, t);
+            return false;
+        }
+    }
+
+    /** Returns whether the filter instruments the specified invocation, treating a failing check as not. */
+    public static boolean shouldInstrument(
+            InstrumentationFilter filter,
+            Object instance,
+            Method method,
+            Object[] args) {
+        try {
+            return filter.shouldInstrument(instance, method, args);
+        } catch (Throwable t) {
+            logInvocationWarning("shouldInstrument", instance, method, t);
+            return false;
+        }
+    }
+
+    /** Returns the handler's invocation context, or null if the handler fails. */
+    @Nullable
+    public static InvocationContext preInvocation(
+            InvocationEventHandler<?> eventHandler,
+            Object instance,
+            Method method,
+            Object[] args) {
+        try {
+            return eventHandler.preInvocation(instance, method, args);
+        } catch (RuntimeException e) {
+            logInvocationWarning("preInvocation", instance, method, e);
+            return null;
+        }
+    }
+
+    public static void onSuccess(
+            InvocationEventHandler<?> eventHandler,
+            @Nullable InvocationContext context,
+            @Nullable Object result) {
+        try {
+            eventHandler.onSuccess(context, result);
+        } catch (RuntimeException e) {
+            logInvocationWarning("onSuccess", context, result, e);
+        }
+    }
+
+    public static void onFailure(
+            InvocationEventHandler<?> eventHandler,
+            @Nullable InvocationContext context,
+            Throwable cause) {
+        try {
+            eventHandler.onFailure(context, cause);
+        } catch (RuntimeException e) {
+            logInvocationWarning("onFailure", context, cause, e);
+        }
+    }
+
+    private static SafeArg<String> safeSimpleClassName(@CompileTimeConstant String name, @Nullable Object object) {
+        return SafeArg.of(name, (object == null) ? "null" : object.getClass().getSimpleName());
+    }
+
+    static void logInvocationWarning(
+            String event,
+            @Nullable InvocationContext context,
+            @Nullable Object result,
+            Throwable cause) {
+        if (logger.isWarnEnabled()) {
+            logger.warn("{} occurred handling '{}' ({}, {}): {}",
+                    safeSimpleClassName("cause", cause),
+                    SafeArg.of("event", event),
+                    UnsafeArg.of("context", context),
+                    safeSimpleClassName("result", result),
+                    cause);
+        }
+    }
+
+    static void logInvocationWarning(
+            String event,
+            Object instance,
+            Method method,
+            Throwable cause) {
+        if (logger.isWarnEnabled()) {
+            logger.warn("{} occurred handling '{}' invocation of {} {} on {} instance: {}",
+                    safeSimpleClassName("cause", cause),
+                    SafeArg.of("event", event),
+                    SafeArg.of("class", method.getDeclaringClass().getName()),
+                    SafeArg.of("method", method),
+                    safeSimpleClassName("instanceClass", instance),
+                    UnsafeArg.of("instance", instance),
+                    cause);
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.tritium.api.event.InstrumentationFilter;
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.test.TestImplementation;
+import com.palantir.tritium.test.TestInterface;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ByteBuddyInstrumentationTest {
+
+    @Mock
+    private InvocationEventHandler<InvocationContext> handler;
+
+    @Mock
+    private InvocationContext context;
+
+    private final TestImplementation delegate = new TestImplementation();
+
+    @Before
+    public void before() {
+        when(handler.isEnabled()).thenReturn(true);
+    }
+
+    @Test
+    public void testInstrument() throws Exception {
+        when(handler.preInvocation(any(), any(), any())).thenReturn(context);
+        TestInterface proxy = ByteBuddyInstrumentation.instrument(TestInterface.class, delegate, handler, alwaysOn());
+
+        assertThat(proxy.test()).isEqualTo("hello");
+        assertThat(delegate.invocationCount()).isEqualTo(1);
+
+        Method method = TestInterface.class.getMethod("test");
+        verify(handler).preInvocation(same(proxy), eq(method), eq(new Object[0]));
+        verify(handler).onSuccess(context, "hello");
+    }
+
+    @Test
+    public void testArguments() throws Exception {
+        when(handler.preInvocation(any(), any(), any())).thenReturn(context);
+        TestInterface proxy = ByteBuddyInstrumentation.instrument(TestInterface.class, delegate, handler, alwaysOn());
+
+        List<String> list = ImmutableList.of("a");
+        proxy.multiArgumentMethod("test", 42, list);
+        assertThat(delegate.invocationCount()).isEqualTo(1);
+
+        Method method = TestInterface.class.getMethod("multiArgumentMethod", String.class, int.class,
+                java.util.Collection.class);
+        verify(handler).preInvocation(same(proxy), eq(method), eq(new Object[] {"test", 42, list}));
+        verify(handler).onSuccess(context, null);
+    }
+
+    @Test
+    public void testFailure() {
+        when(handler.preInvocation(any(), any(), any())).thenReturn(context);
+        TestInterface proxy = ByteBuddyInstrumentation.instrument(TestInterface.class, delegate, handler, alwaysOn());
+
+        assertThatThrownBy(proxy::throwsCheckedException)
+                .isInstanceOf(TestImplementation.TestException.class);
+        verify(handler).onFailure(same(context), any(TestImplementation.TestException.class));
+        verify(handler, never()).onSuccess(any(), any());
+    }
+
+    @Test
+    public void testFilteredInvocation() {
+        TestInterface proxy = ByteBuddyInstrumentation.instrument(TestInterface.class, delegate, handler,
+                (instance, method, args) -> false);
+
+        assertThat(proxy.test()).isEqualTo("hello");
+        verify(handler, never()).preInvocation(any(), any(), any());
+        verify(handler, never()).onSuccess(any(), any());
+    }
+
+    @Test
+    public void testDisabledHandlerSkipsFilter() {
+        when(handler.isEnabled()).thenReturn(false);
+        AtomicInteger filtered = new AtomicInteger();
+        TestInterface proxy = ByteBuddyInstrumentation.instrument(TestInterface.class, delegate, handler,
+                (instance, method, args) -> filtered.incrementAndGet() > 0);
+
+        proxy.multiArgumentMethod("test", 42, ImmutableList.of());
+        assertThat(delegate.invocationCount()).isEqualTo(1);
+        assertThat(filtered).hasValue(0);
+        verify(handler, never()).preInvocation(any(), any(), any());
+    }
+
+    @Test
+    public void testHandlerFailureDoesNotPropagate() {
+        when(handler.preInvocation(any(), any(), any())).thenThrow(new IllegalStateException("expected"));
+        TestInterface proxy = ByteBuddyInstrumentation.instrument(TestInterface.class, delegate, handler, alwaysOn());
+
+        assertThat(proxy.test()).isEqualTo("hello");
+        verify(handler, never()).onSuccess(any(), any());
+    }
+
+    @Test
+    public void testAdditionalInterfaces() {
+        TestInterface proxy = ByteBuddyInstrumentation.instrument(TestInterface.class, delegate, handler, alwaysOn());
+
+        assertThat(proxy).isInstanceOf(Runnable.class);
+        ((Runnable) proxy).run();
+        assertThat(delegate.invocationCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testProxyClassReused() {
+        TestInterface first = ByteBuddyInstrumentation.instrument(TestInterface.class, delegate, handler, alwaysOn());
+        TestInterface second = ByteBuddyInstrumentation.instrument(TestInterface.class, delegate, handler, alwaysOn());
+
+        assertThat(first).isNotSameAs(second);
+        assertThat(first.getClass()).isSameAs(second.getClass());
+    }
+
+    @Test
+    public void testToString() {
+        TestInterface proxy = ByteBuddyInstrumentation.instrument(TestInterface.class, delegate, handler, alwaysOn());
+
+        assertThat(proxy.toString()).isEqualTo(TestImplementation.class.getName());
+        verify(handler, never()).preInvocation(any(), any(), any());
+    }
+
+    @Test
+    public void testDefaultMethod() {
+        DefaultMethodInterface proxy = ByteBuddyInstrumentation.instrument(
+                DefaultMethodInterface.class, new DefaultMethodInterface() {}, handler, alwaysOn());
+
+        assertThat(proxy.value()).isEqualTo(1);
+        verify(handler).preInvocation(same(proxy), any(Method.class), eq(new Object[0]));
+    }
+
+    @Test
+    public void testIsSupported() {
+        assertThat(ByteBuddyInstrumentation.isSupported(TestInterface.class, TestImplementation.class)).isTrue();
+        assertThat(ByteBuddyInstrumentation.isSupported(PrivateInterface.class, PrivateInterface.class)).isFalse();
+        assertThatThrownBy(() -> ByteBuddyInstrumentation.instrument(
+                PrivateInterface.class, new PrivateInterface() {}, handler, alwaysOn()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static InstrumentationFilter alwaysOn() {
+        return (instance, method, args) -> true;
+    }
+
+    public interface DefaultMethodInterface {
+        default int value() {
+            return 1;
+        }
+    }
+
+    private interface PrivateInterface {}
+
+}
@@ -38,6 +38,7 @@ import com.google.common.collect.ImmutableSet;
 import com.palantir.tritium.Tagged;
 import com.palantir.tritium.api.event.InstrumentationFilter;
 import com.palantir.tritium.event.InstrumentationFilters;
+import com.palantir.tritium.event.InstrumentationProperties;
 import com.palantir.tritium.event.InvocationContext;
 import com.palantir.tritium.event.InvocationEventHandler;
 import com.palantir.tritium.event.log.LoggingInvocationEventHandler;
@@ -119,6 +120,48 @@ public class InstrumentationTest {
         assertThat(Proxy.isProxyClass(instrumented.getClass())).isFalse();
     }
 
+    @Test
+    public void testGeneratedProxy() {
+        TestImplementation delegate = new TestImplementation();
+        TestInterface instrumented = Instrumentation.builder(TestInterface.class, delegate)
+                .withMetrics(metrics)
+                .build();
+        assertThat(Proxy.isProxyClass(instrumented.getClass())).isFalse();
+        assertThat(instrumented).isNotSameAs(delegate);
+
+        instrumented.test();
+        assertThat(delegate.invocationCount()).isEqualTo(1);
+        assertThat(metrics.timer(EXPECTED_METRIC_NAME).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDynamicProxyFallback() {
+        System.setProperty("instrument.dynamic-proxy", "true");
+        try {
+            InstrumentationProperties.reload();
+            TestImplementation delegate = new TestImplementation();
+            TestInterface instrumented = Instrumentation.builder(TestInterface.class, delegate)
+                    .withMetrics(metrics)
+                    .build();
+            assertThat(Proxy.isProxyClass(instrumented.getClass())).isTrue();
+
+            instrumented.test();
+            assertThat(metrics.timer(EXPECTED_METRIC_NAME).getCount()).isEqualTo(1);
+        } finally {
+            System.clearProperty("instrument.dynamic-proxy");
+            InstrumentationProperties.reload();
+        }
+    }
+
+    @Test
+    public void testNonPublicInterfaceFallback() {
+        AnnotatedInterface delegate = mock(AnnotatedInterface.class);
+        AnnotatedInterface instrumented = Instrumentation.builder(AnnotatedInterface.class, delegate)
+                .withMetrics(metrics)
+                .build();
+        assertThat(Proxy.isProxyClass(instrumented.getClass())).isTrue();
+    }
+
     @Test
     public void testBuilder() {
         TestImplementation delegate = new TestImplementation();
@@ -151,6 +194,47 @@ public class InstrumentationTest {
         Slf4jReporter.forRegistry(metricRegistry).withLoggingLevel(LoggingLevel.INFO).build().report();
     }
 
+    @Test
+    public void testTemplate() {
+        InstrumentationTemplate<TestInterface, TestImplementation> template = Instrumentation
+                .templateBuilder(TestInterface.class, TestImplementation.class)
+                .withMetrics(metrics)
+                .buildTemplate();
+
+        TestImplementation first = new TestImplementation();
+        TestImplementation second = new TestImplementation();
+        TestInterface firstInstrumented = template.instrument(first);
+        TestInterface secondInstrumented = template.instrument(second);
+        assertThat(firstInstrumented).isNotSameAs(first).isNotSameAs(secondInstrumented);
+        assertThat(secondInstrumented.getClass()).isSameAs(firstInstrumented.getClass());
+
+        firstInstrumented.test();
+        secondInstrumented.test();
+        secondInstrumented.test();
+        assertThat(first.invocationCount()).isEqualTo(1);
+        assertThat(second.invocationCount()).isEqualTo(2);
+        assertThat(metrics.timer(EXPECTED_METRIC_NAME).getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testTemplateRejectsOtherDelegateClasses() {
+        InstrumentationTemplate<TestInterface, TestInterface> template = Instrumentation
+                .templateBuilder(TestInterface.class, TestInterface.class)
+                .withMetrics(metrics)
+                .buildTemplate();
+        assertThatThrownBy(() -> template.instrument(new TestImplementation()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Delegate class does not match template");
+    }
+
+    @Test
+    public void testTemplateBuilderRequiresBuildTemplate() {
+        assertThatThrownBy(() -> Instrumentation.templateBuilder(TestInterface.class, TestImplementation.class)
+                .withMetrics(metrics)
+                .build())
+                .isInstanceOf(IllegalStateException.class);
+    }
+
     @Test
     public void testMetricGroupBuilder() {
         AnnotatedInterface delegate = mock(AnnotatedInterface.class);
@@ -163,7 +163,7 @@ public class InvocationEventProxyTest {
     @Test
     public void testToInvocationDebugString() throws Exception {
         Throwable cause = new RuntimeException("cause");
-        InvocationEventProxy.logInvocationWarning("test", this, getToStringMethod(), cause);
+        InvocationEvents.logInvocationWarning("test", this, getToStringMethod(), cause);
     }
 
     @Test
@@ -171,7 +171,7 @@ public class InvocationEventProxyTest {
         Throwable cause = new RuntimeException("cause");
         InvocationContext context = DefaultInvocationContext.of("test", getToStringMethod(), EMPTY_ARGS);
         Object result = "Hello, World!";
-        InvocationEventProxy.logInvocationWarning("test", context, result, cause);
+        InvocationEvents.logInvocationWarning("test", context, result, cause);
     }
 
     @Test
@@ -0,0 +1,254 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event.metrics;
+
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.BASE_EPOCH_MILLIS_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.BASE_NANOS_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.CAPACITY_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.DICTIONARY_BYTES_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.DICTIONARY_END_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.DURATION_NANOS_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.HEADER_BYTES;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.MAGIC;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.MAGIC_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.METHOD_ID_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.OUTCOME_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.RECORD_BYTES;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.SEQUENCE_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.START_NANOS_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.SUCCESS;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.THREAD_ID_OFFSET;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.VERSION;
+import static com.palantir.tritium.event.metrics.BinaryEventLogInvocationEventHandler.VERSION_OFFSET;
+
+import com.palantir.logsafe.SafeArg;
+import com.palantir.logsafe.exceptions.SafeIllegalArgumentException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+/**
+ * Decodes files written by {@link BinaryEventLogInvocationEventHandler}, either to CSV with one line per invocation,
+ * or to an HdrHistogram log with one histogram of durations, in nanoseconds, per method. Files should only be decoded
+ * once the handler writing them has been closed, or its process has exited.
+ * <p>
+ * Usage from the command line: {@code BinaryEventLogDecoder csv|hlog <file>}, writing to standard output.
+ */
+public final class BinaryEventLogDecoder {
+
+    private static final String UNKNOWN_METHOD = "<unknown>";
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<Integer, String> methods;
+    private final List<Event> events;
+
+    private BinaryEventLogDecoder(Map<Integer, String> methods, List<Event> events) {
+        this.methods = methods;
+        this.events = events;
+    }
+
+    /** Decodes the file named by the second argument to standard output, in the format named by the first. */
+    @SuppressWarnings("BanSystemOut") // command line entry point writing its output to standard output
+    public static void main(String[] args) throws IOException {
+        run(args, System.out);
+    }
+
+    static void run(String[] args, OutputStream out) throws IOException {
+        if (args.length != 2) {
+            throw new SafeIllegalArgumentException("Usage: BinaryEventLogDecoder csv|hlog <file>");
+        }
+        BinaryEventLogDecoder decoder = read(Paths.get(args[1]));
+        if ("csv".equals(args[0])) {
+            decoder.writeCsv(out);
+        } else if ("hlog".equals(args[0])) {
+            decoder.writeHistograms(out);
+        } else {
+            throw new SafeIllegalArgumentException("Unknown output format, expected csv or hlog",
+                    SafeArg.of("format", args[0]));
+        }
+    }
+
+    /**
+     * Reads all complete records from the specified file.
+     *
+     * @param file file written by {@link BinaryEventLogInvocationEventHandler}
+     * @return decoder of the file's records
+     * @throws IOException if the file cannot be read
+     */
+    public static BinaryEventLogDecoder read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new SafeIllegalArgumentException("Not a Tritium binary event log");
+        }
+        int version = buffer.getInt(VERSION_OFFSET);
+        if (version != VERSION) {
+            throw new SafeIllegalArgumentException("Unsupported binary event log version",
+                    SafeArg.of("version", version));
+        }
+        int capacity = buffer.getInt(CAPACITY_OFFSET);
+        int dictionaryBytes = buffer.getInt(DICTIONARY_BYTES_OFFSET);
+        long baseNanos = buffer.getLong(BASE_NANOS_OFFSET);
+        long baseEpochMillis = buffer.getLong(BASE_EPOCH_MILLIS_OFFSET);
+        int dictionaryEnd = buffer.getInt(DICTIONARY_END_OFFSET);
+
+        Map<Integer, String> methods = new HashMap<>();
+        int offset = HEADER_BYTES;
+        while (offset < HEADER_BYTES + dictionaryEnd) {
+            int methodId = buffer.getInt(offset);
+            byte[] name = new byte[buffer.getInt(offset + 4)];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = buffer.get(offset + 8 + i);
+            }
+            methods.put(methodId, new String(name, StandardCharsets.UTF_8));
+            offset += 8 + name.length;
+        }
+
+        List<Event> events = new ArrayList<>();
+        int recordsOffset = HEADER_BYTES + dictionaryBytes;
+        for (int slot = 0; slot < capacity; slot++) {
+            int recordOffset = recordsOffset + slot * RECORD_BYTES;
+            long sequence = buffer.getLong(recordOffset + SEQUENCE_OFFSET) - 1;
+            // skip empty slots and slots being written
+            if (sequence >= 0 && (sequence & (capacity - 1)) == slot) {
+                long startNanos = buffer.getLong(recordOffset + START_NANOS_OFFSET);
+                events.add(new Event(
+                        sequence,
+                        buffer.getInt(recordOffset + METHOD_ID_OFFSET),
+                        baseEpochMillis * 1_000_000L + (startNanos - baseNanos),
+                        buffer.getLong(recordOffset + DURATION_NANOS_OFFSET),
+                        buffer.getInt(recordOffset + OUTCOME_OFFSET) == SUCCESS,
+                        buffer.getLong(recordOffset + THREAD_ID_OFFSET)));
+            }
+        }
+        events.sort(Comparator.comparingLong(event -> event.sequence));
+        return new BinaryEventLogDecoder(methods, events);
+    }
+
+    /** Returns the number of records read. */
+    public int size() {
+        return events.size();
+    }
+
+    /**
+     * Writes one line per invocation, in the order invocations completed, with the columns sequence, method, start
+     * time (ISO-8601), start time in nanoseconds since the epoch, duration in nanoseconds, outcome and thread ID.
+     * The stream is flushed but not closed.
+     *
+     * @param stream stream to write UTF-8 encoded CSV to
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeCsv(OutputStream stream) throws IOException {
+        PrintStream out = new PrintStream(stream, false, "UTF-8");
+        out.println("sequence,method,start,start_epoch_nanos,duration_nanos,outcome,thread_id");
+        for (Event event : events) {
+            Instant start = Instant.ofEpochSecond(0, event.startEpochNanos);
+            out.println(event.sequence + "," + method(event) + "," + start + "," + event.startEpochNanos + ","
+                    + event.durationNanos + "," + (event.success ? "success" : "failure") + "," + event.threadId);
+        }
+        flush(out);
+    }
+
+    /**
+     * Writes a histogram of durations, in nanoseconds, for each method, tagged with the method's name. The stream is
+     * flushed but not closed.
+     *
+     * @param stream stream to write the HdrHistogram log to
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeHistograms(OutputStream stream) throws IOException {
+        PrintStream out = new PrintStream(stream, false, "UTF-8");
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        long startMillis = Long.MAX_VALUE;
+        long endMillis = Long.MIN_VALUE;
+        for (Event event : events) {
+            Histogram histogram = histograms.computeIfAbsent(method(event), name -> {
+                Histogram newHistogram = new Histogram(SIGNIFICANT_DIGITS);
+                newHistogram.setTag(name);
+                return newHistogram;
+            });
+            histogram.recordValue(Math.max(0, event.durationNanos));
+            long eventStartMillis = TimeUnit.NANOSECONDS.toMillis(event.startEpochNanos);
+            startMillis = Math.min(startMillis, eventStartMillis);
+            endMillis = Math.max(endMillis,
+                    TimeUnit.NANOSECONDS.toMillis(event.startEpochNanos + event.durationNanos));
+        }
+
+        HistogramLogWriter writer = new HistogramLogWriter(out);
+        writer.outputLogFormatVersion();
+        writer.outputComment("Tritium invocation latency histograms in nanoseconds");
+        if (!events.isEmpty()) {
+            writer.outputStartTime(startMillis);
+            writer.setBaseTime(startMillis);
+        }
+        writer.outputLegend();
+        for (Histogram histogram : histograms.values()) {
+            histogram.setStartTimeStamp(startMillis);
+            histogram.setEndTimeStamp(endMillis);
+            writer.outputIntervalHistogram(histogram);
+        }
+        flush(out);
+    }
+
+    private static void flush(PrintStream out) throws IOException {
+        out.flush();
+        if (out.checkError()) {
+            throw new IOException("Failed to write decoded binary event log");
+        }
+    }
+
+    private String method(Event event) {
+        return methods.getOrDefault(event.methodId, UNKNOWN_METHOD);
+    }
+
+    private static final class Event {
+        private final long sequence;
+        private final int methodId;
+        private final long startEpochNanos;
+        private final long durationNanos;
+        private final boolean success;
+        private final long threadId;
+
+        Event(long sequence, int methodId, long startEpochNanos, long durationNanos, boolean success, long threadId) {
+            this.sequence = sequence;
+            this.methodId = methodId;
+            this.startEpochNanos = startEpochNanos;
+            this.durationNanos = durationNanos;
+            this.success = success;
+            this.threadId = threadId;
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event.metrics;
+
+import static com.palantir.logsafe.Preconditions.checkArgument;
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.palantir.logsafe.SafeArg;
+import com.palantir.tritium.event.AbstractInvocationEventHandler;
+import com.palantir.tritium.event.InstrumentationProperties;
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.event.PooledInvocationContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * {@link InvocationEventHandler} that appends a fixed size binary record of every invocation to a memory-mapped ring
+ * file, cheap enough to leave enabled permanently. Files are decoded offline with {@link BinaryEventLogDecoder}.
+ * <p>
+ * Each record holds the invoked method's ID, the start time and duration in nanoseconds, whether the invocation
+ * succeeded and the ID of the thread it completed on. Method IDs are assigned on the first invocation of each method
+ * and written to a dictionary section of the file. Once the ring is full, the oldest records are overwritten.
+ * <p>
+ * Records are written with plain stores to the mapped file, without ordering the store which publishes a record's
+ * sequence after the stores of its fields, and without excluding a concurrent writer whose record wraps around onto
+ * the same slot. The file should therefore only be decoded once the handler has been closed, or the process writing
+ * it has exited, at which point the operating system flushes the mapped pages even after a crash; decoding a live
+ * file may return partially written records, and a record may be corrupted if the ring wraps around while it is being
+ * written.
+ */
+public final class BinaryEventLogInvocationEventHandler extends AbstractInvocationEventHandler<InvocationContext>
+        implements Closeable {
+
+    static final int MAGIC = 0x54524954; // "TRIT"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int RECORD_BYTES = 40;
+    static final int UNKNOWN_METHOD_ID = -1;
+    static final int SUCCESS = 0;
+    static final int FAILURE = 1;
+
+    // header fields
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int CAPACITY_OFFSET = 8;
+    static final int DICTIONARY_BYTES_OFFSET = 12;
+    static final int BASE_NANOS_OFFSET = 16;
+    static final int BASE_EPOCH_MILLIS_OFFSET = 24;
+    static final int DICTIONARY_END_OFFSET = 32;
+
+    // record fields
+    static final int SEQUENCE_OFFSET = 0;
+    static final int METHOD_ID_OFFSET = 8;
+    static final int OUTCOME_OFFSET = 12;
+    static final int START_NANOS_OFFSET = 16;
+    static final int DURATION_NANOS_OFFSET = 24;
+    static final int THREAD_ID_OFFSET = 32;
+
+    private static final int DEFAULT_DICTIONARY_BYTES = 1 << 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int mask;
+    private final int dictionaryBytes;
+    private final int recordsOffset;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentMap<Method, Integer> methodIds = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private int nextMethodId;
+    private int dictionaryEnd;
+
+    /**
+     * Creates a handler writing to the specified file, with room for one megabyte of method names.
+     *
+     * @param file file to write, which is replaced if it exists
+     * @param serviceName service name, used to enable or disable instrumentation
+     * @param capacity number of records kept in the ring, which must be a power of two
+     * @throws IOException if the file cannot be created and mapped
+     */
+    public BinaryEventLogInvocationEventHandler(Path file, String serviceName, int capacity) throws IOException {
+        this(file, serviceName, capacity, DEFAULT_DICTIONARY_BYTES);
+    }
+
+    /**
+     * Creates a handler writing to the specified file.
+     *
+     * @param file file to write, which is replaced if it exists
+     * @param serviceName service name, used to enable or disable instrumentation
+     * @param capacity number of records kept in the ring, which must be a power of two
+     * @param dictionaryBytes bytes reserved for method names; methods invoked once it is full are recorded with an
+     *     unknown ID
+     * @throws IOException if the file cannot be created and mapped
+     */
+    public BinaryEventLogInvocationEventHandler(Path file, String serviceName, int capacity, int dictionaryBytes)
+            throws IOException {
+        super(InstrumentationProperties.getSystemPropertySupplier(checkNotNull(serviceName, "serviceName")));
+        checkNotNull(file, "file");
+        checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "capacity must be a power of two",
+                SafeArg.of("capacity", capacity));
+        checkArgument(dictionaryBytes >= 0, "dictionaryBytes must not be negative",
+                SafeArg.of("dictionaryBytes", dictionaryBytes));
+        long fileBytes = HEADER_BYTES + (long) dictionaryBytes + (long) capacity * RECORD_BYTES;
+        checkArgument(fileBytes <= Integer.MAX_VALUE, "log must be smaller than 2GiB",
+                SafeArg.of("capacity", capacity), SafeArg.of("dictionaryBytes", dictionaryBytes));
+        this.mask = capacity - 1;
+        this.dictionaryBytes = dictionaryBytes;
+        this.recordsOffset = HEADER_BYTES + dictionaryBytes;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(DICTIONARY_BYTES_OFFSET, dictionaryBytes);
+        buffer.putLong(BASE_NANOS_OFFSET, System.nanoTime());
+        buffer.putLong(BASE_EPOCH_MILLIS_OFFSET, System.currentTimeMillis());
+        buffer.putInt(DICTIONARY_END_OFFSET, 0);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+    }
+
+    @Override
+    public InvocationContext preInvocation(@Nonnull Object instance, @Nonnull Method method, @Nonnull Object[] args) {
+        return PooledInvocationContext.withoutArgs(instance, method);
+    }
+
+    @Override
+    public void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
+        record(context, SUCCESS);
+    }
+
+    @Override
+    public void onFailure(@Nullable InvocationContext context, @Nonnull Throwable cause) {
+        record(context, FAILURE);
+    }
+
+    private void record(@Nullable InvocationContext context, int outcome) {
+        debugIfNullContext(context);
+        if (context != null) {
+            long startNanos = context.getStartTimeNanos();
+            long durationNanos = System.nanoTime() - startNanos;
+            int methodId = methodId(context.getMethod());
+            PooledInvocationContext.release(context);
+
+            long recordSequence = sequence.getAndIncrement();
+            int offset = recordsOffset + (int) (recordSequence & mask) * RECORD_BYTES;
+            // invalidate the slot while it is being written, sequences are stored plus one so that zero is empty
+            buffer.putLong(offset + SEQUENCE_OFFSET, 0L);
+            buffer.putInt(offset + METHOD_ID_OFFSET, methodId);
+            buffer.putInt(offset + OUTCOME_OFFSET, outcome);
+            buffer.putLong(offset + START_NANOS_OFFSET, startNanos);
+            buffer.putLong(offset + DURATION_NANOS_OFFSET, durationNanos);
+            buffer.putLong(offset + THREAD_ID_OFFSET, Thread.currentThread().getId());
+            buffer.putLong(offset + SEQUENCE_OFFSET, recordSequence + 1);
+        }
+    }
+
+    private int methodId(Method method) {
+        Integer methodId = methodIds.get(method);
+        if (methodId == null) {
+            methodId = methodIds.computeIfAbsent(method, this::register);
+        }
+        return methodId;
+    }
+
+    private synchronized int register(Method method) {
+        byte[] name = (method.getDeclaringClass().getSimpleName() + '.' + method.getName())
+                .getBytes(StandardCharsets.UTF_8);
+        int entryBytes = 8 + name.length;
+        if (dictionaryEnd + entryBytes > dictionaryBytes) {
+            return UNKNOWN_METHOD_ID;
+        }
+        int methodId = nextMethodId++;
+        int offset = HEADER_BYTES + dictionaryEnd;
+        buffer.putInt(offset, methodId);
+        buffer.putInt(offset + 4, name.length);
+        for (int i = 0; i < name.length; i++) {
+            buffer.put(offset + 8 + i, name[i]);
+        }
+        dictionaryEnd += entryBytes;
+        buffer.putInt(DICTIONARY_END_OFFSET, dictionaryEnd);
+        return methodId;
+    }
+
+    /** Forces written records to storage and closes the file; later invocations must not be recorded. */
+    @Override
+    public void close() throws IOException {
+        try {
+            buffer.force();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
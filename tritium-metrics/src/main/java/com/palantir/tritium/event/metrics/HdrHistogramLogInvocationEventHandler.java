@@ -0,0 +1,274 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event.metrics;
+
+import static com.palantir.logsafe.Preconditions.checkArgument;
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.palantir.logsafe.SafeArg;
+import com.palantir.tritium.event.AbstractInvocationEventHandler;
+import com.palantir.tritium.event.InstrumentationProperties;
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.event.PooledInvocationContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link InvocationEventHandler} that records the duration of every invocation, in nanoseconds, into a per-method
+ * HdrHistogram {@link Recorder}, and periodically writes the interval histograms of each method to HdrHistogram log
+ * files for offline analysis with the standard HdrHistogram tools, e.g. HistogramLogProcessor.
+ * <p>
+ * Each interval histogram is tagged with the invoked method's "ClassName.methodName". A new file named
+ * "{serviceName}.{UTC start time}.{sequence}.hlog" is started in the log directory after the configured number of
+ * intervals, where the sequence distinguishes files started within the same millisecond; existing files are neither
+ * overwritten nor removed.
+ */
+public final class HdrHistogramLogInvocationEventHandler extends AbstractInvocationEventHandler<InvocationContext>
+        implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(HdrHistogramLogInvocationEventHandler.class);
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final int DEFAULT_INTERVALS_PER_FILE = 60;
+    private static final DateTimeFormatter FILE_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private final Path directory;
+    private final String serviceName;
+    private final int intervalsPerFile;
+    private final ConcurrentMap<Method, MethodRecorder> recorders = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    // guarded by this
+    @Nullable
+    private HistogramLogWriter writer;
+    private int intervalsInFile;
+    private long fileSequence;
+
+    private HdrHistogramLogInvocationEventHandler(Path directory, String serviceName, int intervalsPerFile) {
+        super(InstrumentationProperties.getSystemPropertySupplier(serviceName));
+        this.directory = directory;
+        this.serviceName = serviceName;
+        this.intervalsPerFile = intervalsPerFile;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("tritium-hdr-log-" + serviceName.replace("%", "%%") + "-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Returns a handler writing interval histograms for the specified service every interval, starting a new file
+     * every 60 intervals.
+     *
+     * @param directory directory to write logs to, which is created if it does not exist
+     * @param serviceName service name, used to name log files and to enable or disable instrumentation
+     * @param interval interval between writes
+     * @param intervalUnit unit of the interval
+     * @return handler, which must be {@link #close() closed} to stop its thread and close the current file
+     */
+    public static HdrHistogramLogInvocationEventHandler create(
+            Path directory,
+            String serviceName,
+            long interval,
+            TimeUnit intervalUnit) {
+        return create(directory, serviceName, interval, intervalUnit, DEFAULT_INTERVALS_PER_FILE);
+    }
+
+    /**
+     * Returns a handler writing interval histograms for the specified service every interval.
+     *
+     * @param directory directory to write logs to, which is created if it does not exist
+     * @param serviceName service name, used to name log files and to enable or disable instrumentation
+     * @param interval interval between writes
+     * @param intervalUnit unit of the interval
+     * @param intervalsPerFile number of intervals written to each file before starting a new one
+     * @return handler, which must be {@link #close() closed} to stop its thread and close the current file
+     */
+    public static HdrHistogramLogInvocationEventHandler create(
+            Path directory,
+            String serviceName,
+            long interval,
+            TimeUnit intervalUnit,
+            int intervalsPerFile) {
+        checkNotNull(directory, "directory");
+        checkNotNull(serviceName, "serviceName");
+        checkNotNull(intervalUnit, "intervalUnit");
+        checkArgument(interval > 0, "interval must be positive", SafeArg.of("interval", interval));
+        checkArgument(intervalsPerFile > 0, "intervalsPerFile must be positive",
+                SafeArg.of("intervalsPerFile", intervalsPerFile));
+        HdrHistogramLogInvocationEventHandler handler =
+                new HdrHistogramLogInvocationEventHandler(directory, serviceName, intervalsPerFile);
+        handler.scheduler.scheduleAtFixedRate(handler::writeIntervals, interval, interval, intervalUnit);
+        return handler;
+    }
+
+    @Override
+    public InvocationContext preInvocation(@Nonnull Object instance, @Nonnull Method method, @Nonnull Object[] args) {
+        return PooledInvocationContext.withoutArgs(instance, method);
+    }
+
+    @Override
+    public void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
+        record(context);
+    }
+
+    @Override
+    public void onFailure(@Nullable InvocationContext context, @Nonnull Throwable cause) {
+        record(context);
+    }
+
+    private void record(@Nullable InvocationContext context) {
+        debugIfNullContext(context);
+        if (context != null) {
+            long nanos = System.nanoTime() - context.getStartTimeNanos();
+            recorder(context.getMethod()).recorder.recordValue(Math.max(0, nanos));
+            PooledInvocationContext.release(context);
+        }
+    }
+
+    private MethodRecorder recorder(Method method) {
+        MethodRecorder recorder = recorders.get(method);
+        if (recorder == null) {
+            recorder = recorders.computeIfAbsent(method, MethodRecorder::new);
+        }
+        return recorder;
+    }
+
+    /** Writes the histograms recorded since the previous interval, starting a new file if required. */
+    @VisibleForTesting
+    void writeIntervals() {
+        writeIntervals(false);
+    }
+
+    private synchronized void writeIntervals(boolean closing) {
+        try {
+            HistogramLogWriter currentWriter = writer;
+            if (currentWriter == null || (intervalsInFile >= intervalsPerFile && !closing)) {
+                currentWriter = roll();
+            }
+            for (MethodRecorder recorder : recorders.values()) {
+                Histogram histogram = recorder.intervalHistogram();
+                if (histogram.getTotalCount() > 0) {
+                    currentWriter.outputIntervalHistogram(histogram);
+                }
+            }
+            intervalsInFile++;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write HdrHistogram log for {} to {}",
+                    SafeArg.of("serviceName", serviceName),
+                    SafeArg.of("directory", directory),
+                    e);
+        }
+    }
+
+    private HistogramLogWriter roll() throws IOException {
+        closeWriter();
+        long nowMillis = System.currentTimeMillis();
+        Files.createDirectories(directory);
+        String prefix = serviceName + "." + FILE_TIMESTAMP.format(Instant.ofEpochMilli(nowMillis)) + ".";
+        OutputStream output;
+        while (true) {
+            Path file = directory.resolve(prefix + fileSequence++ + ".hlog");
+            try {
+                output = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                break;
+            } catch (FileAlreadyExistsException expected) {
+                // written by another handler or process, try the next sequence
+            }
+        }
+        HistogramLogWriter newWriter = new HistogramLogWriter(new PrintStream(output, false, "UTF-8"));
+        newWriter.outputLogFormatVersion();
+        newWriter.outputComment("Tritium invocation latency histograms for " + serviceName + " in nanoseconds");
+        newWriter.outputStartTime(nowMillis);
+        newWriter.setBaseTime(nowMillis);
+        newWriter.outputBaseTime(nowMillis);
+        newWriter.outputLegend();
+        writer = newWriter;
+        intervalsInFile = 0;
+        return newWriter;
+    }
+
+    private void closeWriter() {
+        HistogramLogWriter currentWriter = writer;
+        if (currentWriter != null) {
+            currentWriter.close();
+            writer = null;
+        }
+    }
+
+    /** Stops periodic writes, then writes the final interval and closes the current log file. */
+    @Override
+    public void close() {
+        MoreExecutors.shutdownAndAwaitTermination(scheduler, 10, TimeUnit.SECONDS);
+        synchronized (this) {
+            writeIntervals(true);
+            closeWriter();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HdrHistogramLogInvocationEventHandler{serviceName=" + serviceName + ", directory=" + directory + '}';
+    }
+
+    private static final class MethodRecorder {
+        private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        private final String tag;
+        // only accessed while holding the handler's lock
+        @Nullable
+        private Histogram interval;
+
+        MethodRecorder(Method method) {
+            // log tags must not contain whitespace or commas
+            this.tag = (method.getDeclaringClass().getSimpleName() + '.' + method.getName())
+                    .replaceAll("[\\s,]", "_");
+        }
+
+        Histogram intervalHistogram() {
+            Histogram histogram = recorder.getIntervalHistogram(interval);
+            histogram.setTag(tag);
+            interval = histogram;
+            return histogram;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.event.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Gauge;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.StripedMeter;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Tracks the invocations of a single method which are currently in flight.
+ * <p>
+ * The number in flight is counted with a single {@link LongAdder}, which stripes updates across cells under
+ * contention, and arrivals and the total duration of completed invocations with {@link StripedMeter}s, which only
+ * increment a {@link LongAdder} per update. Each arrival reads the number in flight once, and the peak is updated with
+ * a compare-and-set only when an arrival observes a new maximum.
+ * <p>
+ * Besides the number in flight, which is the value of this gauge, the derived gauges report:
+ * <ul>
+ *     <li>peak: the highest number of invocations observed in flight during the current and previous peak
+ *     interval of at least a minute, which is the same for every reader as reading does not reset it</li>
+ *     <li>arrival rate: the one minute exponentially weighted rate of invocations started per second</li>
+ *     <li>mean concurrency: the mean number of invocations in flight, by Little's law the arrival rate multiplied
+ *     by the mean duration, which equals the one minute exponentially weighted rate of the total duration of
+ *     completed invocations per second</li>
+ * </ul>
+ * The rates are derived from monotonic counts, so reading them does not affect their values or other readers.
+ * Comparing the mean concurrency with the timer's latency distinguishes more work arriving from each unit of work
+ * taking longer.
+ */
+final class InFlightMetrics implements Gauge<Long> {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long PEAK_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final LongAdder inFlight = new LongAdder();
+    private final StripedMeter started;
+    private final StripedMeter completedNanos;
+    private final Clock clock;
+    /** Peak of the current interval. */
+    private final AtomicLong peak = new AtomicLong();
+    private final AtomicLong peakIntervalStart;
+    private volatile long previousPeak;
+
+    InFlightMetrics() {
+        this(Clock.defaultClock());
+    }
+
+    InFlightMetrics(Clock clock) {
+        this.clock = clock;
+        this.started = new StripedMeter(clock);
+        this.completedNanos = new StripedMeter(clock);
+        this.peakIntervalStart = new AtomicLong(clock.getTick());
+    }
+
+    /**
+     * Registers the gauges of a new instance with names derived by the specified function from their suffixes, unless
+     * gauges were already registered for the same method, e.g. by another handler, in which case the existing
+     * instance is returned so that all handlers update the registered gauges.
+     */
+    static InFlightMetrics register(TaggedMetricRegistry registry, Function<String, MetricName> metricName) {
+        InFlightMetrics metrics = new InFlightMetrics();
+        Gauge<Long> registered = registry.gauge(metricName.apply("-in-flight"), metrics);
+        if (registered instanceof InFlightMetrics) {
+            if (registered != metrics) {
+                return (InFlightMetrics) registered;
+            }
+            registry.gauge(metricName.apply("-in-flight-peak"), metrics.peakGauge());
+            registry.gauge(metricName.apply("-arrival-rate"), metrics.arrivalRateGauge());
+            registry.gauge(metricName.apply("-concurrency"), metrics.meanConcurrencyGauge());
+        }
+        return metrics;
+    }
+
+    void start() {
+        inFlight.increment();
+        started.mark();
+        long current = inFlight();
+        long currentPeak = peak.get();
+        while (current > currentPeak && !peak.compareAndSet(currentPeak, current)) {
+            currentPeak = peak.get();
+        }
+    }
+
+    void complete(long nanos) {
+        completedNanos.mark(nanos);
+        inFlight.decrement();
+    }
+
+    /**
+     * Returns the number of invocations in flight, which is not negative even if completions are reported for
+     * invocations which were not started.
+     */
+    long inFlight() {
+        return Math.max(0, inFlight.sum());
+    }
+
+    @Override
+    public Long getValue() {
+        return inFlight();
+    }
+
+    /** Returns a gauge of the peak during the current and previous peak interval. */
+    Gauge<Long> peakGauge() {
+        return () -> {
+            rotatePeak();
+            return Math.max(previousPeak, peak.get());
+        };
+    }
+
+    /**
+     * Starts a new peak interval once the current one has lasted {@link #PEAK_INTERVAL_NANOS}. Only the reader which
+     * wins the race to move the interval start resets the peak, so concurrent readers see the same intervals.
+     */
+    private void rotatePeak() {
+        long start = peakIntervalStart.get();
+        long now = clock.getTick();
+        if (now - start >= PEAK_INTERVAL_NANOS && peakIntervalStart.compareAndSet(start, now)) {
+            previousPeak = peak.getAndSet(inFlight());
+        }
+    }
+
+    Gauge<Double> arrivalRateGauge() {
+        return started::getOneMinuteRate;
+    }
+
+    Gauge<Double> meanConcurrencyGauge() {
+        return () -> completedNanos.getOneMinuteRate() / NANOS_PER_SECOND;
+    }
+
+}
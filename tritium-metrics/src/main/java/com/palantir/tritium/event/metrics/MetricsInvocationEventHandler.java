@@ -18,24 +18,34 @@ package com.palantir.tritium.event.metrics;
 
 import static com.palantir.logsafe.Preconditions.checkNotNull;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Strings;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
 import com.palantir.tritium.event.AbstractInvocationEventHandler;
-import com.palantir.tritium.event.DefaultInvocationContext;
+import com.palantir.tritium.event.AsyncCompletion;
 import com.palantir.tritium.event.InstrumentationProperties;
 import com.palantir.tritium.event.InvocationContext;
 import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.event.PooledInvocationContext;
 import com.palantir.tritium.event.metrics.annotations.AnnotationHelper;
 import com.palantir.tritium.event.metrics.annotations.MetricGroup;
 import java.lang.reflect.Method;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 /**
  * {@link InvocationEventHandler} that records method timing and failures using Dropwizard metrics.
+ * <p>
+ * Invocations of methods returning a {@link java.util.concurrent.CompletionStage} or
+ * {@link com.google.common.util.concurrent.ListenableFuture} are timed until the returned future completes.
  */
 public final class MetricsInvocationEventHandler extends AbstractInvocationEventHandler<InvocationContext> {
 
@@ -48,6 +58,8 @@ public final class MetricsInvocationEventHandler extends AbstractInvocationEvent
     private final Map<AnnotationHelper.MethodSignature, String> metricGroups;
     @Nullable private final String globalGroupPrefix;
 
+    private final ConcurrentMap<Method, MethodMetrics> methodMetrics = new ConcurrentHashMap<>();
+
     @SuppressWarnings("WeakerAccess") // public API
     public MetricsInvocationEventHandler(MetricRegistry metricRegistry, String serviceName) {
         super(getEnabledSupplier(serviceName));
@@ -97,15 +109,31 @@ public final class MetricsInvocationEventHandler extends AbstractInvocationEvent
 
     @Override
     public InvocationContext preInvocation(@Nonnull Object instance, @Nonnull Method method, @Nonnull Object[] args) {
-        return DefaultInvocationContext.of(instance, method, args);
+        return PooledInvocationContext.withoutArgs(instance, method);
     }
 
     @Override
     public void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
         debugIfNullContext(context);
         if (context != null) {
-            long nanos = updateTimer(context);
-            handleSuccessAnnotations(context, nanos);
+            long startNanos = context.getStartTimeNanos();
+            MethodMetrics metrics = methodMetrics(context.getMethod());
+            PooledInvocationContext.release(context);
+            boolean deferred = metrics.async
+                    && AsyncCompletion.whenComplete(result, failure -> complete(metrics, startNanos, failure));
+            if (!deferred) {
+                metrics.success(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private void complete(MethodMetrics metrics, long startNanos, @Nullable Throwable failure) {
+        long nanos = System.nanoTime() - startNanos;
+        if (failure == null) {
+            metrics.success(nanos);
+        } else {
+            markGlobalFailure();
+            metrics.failure(failure, nanos);
         }
     }
 
@@ -114,57 +142,89 @@ public final class MetricsInvocationEventHandler extends AbstractInvocationEvent
         markGlobalFailure();
         debugIfNullContext(context);
         if (context != null) {
-            String failuresMetricName = MetricRegistry.name(getBaseMetricName(context), FAILURES);
-            metricRegistry.meter(failuresMetricName).mark();
-            metricRegistry.meter(MetricRegistry.name(failuresMetricName, cause.getClass().getName())).mark();
-            long nanos = updateTimer(context);
-            handleFailureAnnotations(context, nanos);
+            long nanos = System.nanoTime() - context.getStartTimeNanos();
+            methodMetrics(context.getMethod()).failure(cause, nanos);
+            PooledInvocationContext.release(context);
         }
     }
 
-    private long updateTimer(InvocationContext context) {
-        long nanos = System.nanoTime() - context.getStartTimeNanos();
-        metricRegistry.timer(getBaseMetricName(context))
-                .update(nanos, TimeUnit.NANOSECONDS);
-        return nanos;
-    }
-
-    private String getBaseMetricName(InvocationContext context) {
-        return MetricRegistry.name(serviceName, context.getMethod().getName());
+    private MethodMetrics methodMetrics(Method method) {
+        MethodMetrics metrics = methodMetrics.get(method);
+        if (metrics == null) {
+            metrics = methodMetrics.computeIfAbsent(method, MethodMetrics::new);
+        }
+        return metrics;
     }
 
     private void markGlobalFailure() {
         metricRegistry.meter(FAILURES).mark();
     }
 
-    private void handleSuccessAnnotations(InvocationContext context, long nanos) {
-        String metricName = getAnnotatedMetricName(context);
-        if (metricName != null) {
-            metricRegistry.timer(MetricRegistry.name(serviceName, metricName))
-                    .update(nanos, TimeUnit.NANOSECONDS);
+    /**
+     * Metrics for a single method, registered on first use and cached so that invocations only update existing
+     * metrics rather than building names and looking them up in the registry.
+     */
+    private final class MethodMetrics {
+        private final String baseMetricName;
+        private final Supplier<Timer> timer;
+        private final Supplier<Meter> failures;
+        private final ConcurrentMap<Class<?>, Meter> causeFailures = new ConcurrentHashMap<>();
+        @Nullable private final GroupMetrics group;
+        @Nullable private final GroupMetrics globalGroup;
+        private final boolean async;
+
+        MethodMetrics(Method method) {
+            this.async = AsyncCompletion.isAsync(method);
+            this.baseMetricName = MetricRegistry.name(serviceName, method.getName());
+            this.timer = Suppliers.memoize(() -> metricRegistry.timer(baseMetricName));
+            this.failures = Suppliers.memoize(() ->
+                    metricRegistry.meter(MetricRegistry.name(baseMetricName, FAILURES)));
+            String metricGroup = metricGroups.get(AnnotationHelper.MethodSignature.of(method));
+            this.group = (metricGroup == null) ? null : new GroupMetrics(serviceName, metricGroup);
+            this.globalGroup = (metricGroup == null || globalGroupPrefix == null)
+                    ? null : new GroupMetrics(globalGroupPrefix, metricGroup);
+        }
 
-            if (globalGroupPrefix != null) {
-                metricRegistry.timer(MetricRegistry.name(globalGroupPrefix, metricName))
-                        .update(nanos, TimeUnit.NANOSECONDS);
+        void success(long nanos) {
+            timer.get().update(nanos, TimeUnit.NANOSECONDS);
+            if (group != null) {
+                group.timer.get().update(nanos, TimeUnit.NANOSECONDS);
+            }
+            if (globalGroup != null) {
+                globalGroup.timer.get().update(nanos, TimeUnit.NANOSECONDS);
             }
         }
-    }
 
-    private void handleFailureAnnotations(InvocationContext context, long nanos) {
-        String metricName = getAnnotatedMetricName(context);
-        if (metricName != null) {
-            metricRegistry.timer(MetricRegistry.name(serviceName, metricName, FAILURES))
-                    .update(nanos, TimeUnit.NANOSECONDS);
+        void failure(Throwable cause, long nanos) {
+            failures.get().mark();
+            causeFailures(cause.getClass()).mark();
+            timer.get().update(nanos, TimeUnit.NANOSECONDS);
+            if (group != null) {
+                group.failures.get().update(nanos, TimeUnit.NANOSECONDS);
+            }
+            if (globalGroup != null) {
+                globalGroup.failures.get().update(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
 
-            if (globalGroupPrefix != null) {
-                metricRegistry.timer(MetricRegistry.name(globalGroupPrefix, metricName, FAILURES))
-                        .update(nanos, TimeUnit.NANOSECONDS);
+        private Meter causeFailures(Class<?> causeClass) {
+            Meter meter = causeFailures.get(causeClass);
+            if (meter == null) {
+                meter = causeFailures.computeIfAbsent(causeClass, clazz -> metricRegistry.meter(
+                        MetricRegistry.name(baseMetricName, FAILURES, clazz.getName())));
             }
+            return meter;
         }
     }
 
-    @Nullable
-    private String getAnnotatedMetricName(InvocationContext context) {
-        return metricGroups.get(AnnotationHelper.MethodSignature.of(context.getMethod()));
+    private final class GroupMetrics {
+        private final Supplier<Timer> timer;
+        private final Supplier<Timer> failures;
+
+        GroupMetrics(String prefix, String metricGroup) {
+            this.timer = Suppliers.memoize(() -> metricRegistry.timer(MetricRegistry.name(prefix, metricGroup)));
+            this.failures = Suppliers.memoize(() ->
+                    metricRegistry.timer(MetricRegistry.name(prefix, metricGroup, FAILURES)));
+        }
     }
 }
@@ -0,0 +1,83 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event.metrics;
+
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** A single invocation captured by {@link SlowestInvocationEventHandler}. */
+public final class SlowInvocation {
+
+    private final String className;
+    private final String methodName;
+    private final List<String> argumentTypes;
+    private final long startTimeMillis;
+    private final long durationNanos;
+    private final String threadName;
+
+    SlowInvocation(String className, String methodName, List<String> argumentTypes, long startTimeMillis,
+            long durationNanos, String threadName) {
+        this.className = checkNotNull(className, "className");
+        this.methodName = checkNotNull(methodName, "methodName");
+        this.argumentTypes = ImmutableList.copyOf(argumentTypes);
+        this.startTimeMillis = startTimeMillis;
+        this.durationNanos = durationNanos;
+        this.threadName = checkNotNull(threadName, "threadName");
+    }
+
+    /** Simple name of the class declaring the invoked method. */
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * Simple names of the declared argument types, followed by the size in brackets for arguments which are
+     * collections, for example "List[42]".
+     */
+    public List<String> getArgumentTypes() {
+        return argumentTypes;
+    }
+
+    /** Wall clock time the invocation started, in milliseconds since the epoch. */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /** Name of the thread the invocation completed on. */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    @Override
+    public String toString() {
+        return className + '.' + methodName + '(' + String.join(", ", argumentTypes) + ") took "
+                + String.format("%.3f", durationNanos / (double) TimeUnit.MILLISECONDS.toNanos(1))
+                + "ms on " + threadName + " at " + startTimeMillis;
+    }
+
+}
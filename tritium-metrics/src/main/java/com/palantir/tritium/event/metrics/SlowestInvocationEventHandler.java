@@ -0,0 +1,286 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event.metrics;
+
+import static com.palantir.logsafe.Preconditions.checkArgument;
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Gauge;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.tritium.event.AbstractInvocationEventHandler;
+import com.palantir.tritium.event.DefaultInvocationContext;
+import com.palantir.tritium.event.InstrumentationProperties;
+import com.palantir.tritium.event.InvocationArguments;
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * {@link InvocationEventHandler} that captures the slowest invocations of each method during fixed intervals, so
+ * that outliers seen in latency histograms can be traced back to individual calls.
+ * <p>
+ * For each method, the {@code size} slowest invocations of the most recently completed interval are available from
+ * {@link #getSlowestInvocations()} and from a gauge named "{serviceName}-slowest", with the same "service-name" and
+ * "endpoint" tags as {@link TaggedMetricsServiceInvocationEventHandler}. Once an interval's slots are full, an
+ * invocation which is not slower than the fastest invocation captured so far is rejected with a single comparison;
+ * slower invocations replace the fastest one without locking. Handlers created for the same service name and registry
+ * capture the invocations of each method together, in the intervals and number of slots of the first handler to
+ * register the method's gauge.
+ */
+public final class SlowestInvocationEventHandler extends AbstractInvocationEventHandler<InvocationContext> {
+
+    private static final Comparator<SlowInvocation> SLOWEST_FIRST =
+            Comparator.comparingLong(SlowInvocation::getDurationNanos).reversed();
+
+    private final TaggedMetricRegistry taggedMetricRegistry;
+    private final String serviceName;
+    private final int size;
+    private final long intervalNanos;
+    private final Clock clock;
+    private final ConcurrentMap<Method, MethodInvocations> methodInvocations = new ConcurrentHashMap<>();
+
+    public SlowestInvocationEventHandler(
+            TaggedMetricRegistry taggedMetricRegistry,
+            String serviceName,
+            int size,
+            long interval,
+            TimeUnit intervalUnit) {
+        this(taggedMetricRegistry, serviceName, size, interval, intervalUnit, Clock.defaultClock());
+    }
+
+    SlowestInvocationEventHandler(
+            TaggedMetricRegistry taggedMetricRegistry,
+            String serviceName,
+            int size,
+            long interval,
+            TimeUnit intervalUnit,
+            Clock clock) {
+        super(InstrumentationProperties.getSystemPropertySupplier(checkNotNull(serviceName, "serviceName")));
+        checkArgument(size > 0, "size must be positive");
+        checkArgument(interval > 0, "interval must be positive");
+        this.taggedMetricRegistry = checkNotNull(taggedMetricRegistry, "taggedMetricRegistry");
+        this.serviceName = serviceName;
+        this.size = size;
+        this.intervalNanos = checkNotNull(intervalUnit, "intervalUnit").toNanos(interval);
+        this.clock = checkNotNull(clock, "clock");
+    }
+
+    /**
+     * Returns the slowest invocations of each method during the most recently completed interval, slowest first,
+     * keyed by "{class simple name}.{method name}".
+     */
+    public Map<String, List<SlowInvocation>> getSlowestInvocations() {
+        ImmutableMap.Builder<String, List<SlowInvocation>> result = ImmutableMap.builder();
+        for (Map.Entry<Method, MethodInvocations> entry : methodInvocations.entrySet()) {
+            List<SlowInvocation> slowest = entry.getValue().getValue();
+            if (!slowest.isEmpty()) {
+                Method method = entry.getKey();
+                result.put(method.getDeclaringClass().getSimpleName() + '.' + method.getName(), slowest);
+            }
+        }
+        return result.build();
+    }
+
+    @Override
+    public InvocationContext preInvocation(@Nonnull Object instance, @Nonnull Method method, @Nonnull Object[] args) {
+        return new TickContext(clock.getTick(), instance, method, args);
+    }
+
+    @Override
+    public void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
+        record(context);
+    }
+
+    @Override
+    public void onFailure(@Nullable InvocationContext context, @Nonnull Throwable cause) {
+        record(context);
+    }
+
+    private void record(@Nullable InvocationContext context) {
+        debugIfNullContext(context);
+        if (context != null) {
+            long tick = clock.getTick();
+            methodInvocations(context.getMethod()).offer(context, tick, tick - context.getStartTimeNanos());
+        }
+    }
+
+    private MethodInvocations methodInvocations(Method method) {
+        MethodInvocations invocations = methodInvocations.get(method);
+        if (invocations == null) {
+            invocations = methodInvocations.computeIfAbsent(method, this::register);
+        }
+        return invocations;
+    }
+
+    /** Registers the gauge of the specified method, or returns the invocations of a previously registered gauge. */
+    private MethodInvocations register(Method method) {
+        MethodInvocations invocations = new MethodInvocations(size, intervalNanos, clock);
+        Gauge<List<SlowInvocation>> registered = taggedMetricRegistry.gauge(MetricName.builder()
+                .safeName(serviceName + "-slowest")
+                .putSafeTags("service-name", method.getDeclaringClass().getSimpleName())
+                .putSafeTags("endpoint", method.getName())
+                .build(), invocations);
+        return (registered instanceof MethodInvocations) ? (MethodInvocations) registered : invocations;
+    }
+
+    /** Slowest invocations of a method, whose value is the slowest invocations of the last completed interval. */
+    private static final class MethodInvocations implements Gauge<List<SlowInvocation>> {
+        private final int size;
+        private final long intervalNanos;
+        private final Clock clock;
+        private final AtomicReference<Interval> current;
+        private volatile Interval previous;
+
+        MethodInvocations(int size, long intervalNanos, Clock clock) {
+            this.size = size;
+            this.intervalNanos = intervalNanos;
+            this.clock = clock;
+            this.current = new AtomicReference<>(new Interval(Long.MIN_VALUE));
+            this.previous = current.get();
+        }
+
+        void offer(InvocationContext context, long tick, long durationNanos) {
+            interval(Math.floorDiv(tick, intervalNanos)).offer(context, durationNanos);
+        }
+
+        private long currentEpoch() {
+            return Math.floorDiv(clock.getTick(), intervalNanos);
+        }
+
+        private Interval interval(long epoch) {
+            Interval interval = current.get();
+            while (interval.epoch < epoch) {
+                Interval next = new Interval(epoch);
+                if (current.compareAndSet(interval, next)) {
+                    previous = interval;
+                    return next;
+                }
+                interval = current.get();
+            }
+            return interval;
+        }
+
+        @Override
+        public List<SlowInvocation> getValue() {
+            long epoch = currentEpoch();
+            Interval interval = current.get();
+            if (interval.epoch == epoch - 1) {
+                return interval.slowest();
+            }
+            Interval last = previous;
+            if (interval.epoch == epoch && last.epoch == epoch - 1) {
+                return last.slowest();
+            }
+            return ImmutableList.of();
+        }
+
+        private final class Interval {
+            private final long epoch;
+            private final AtomicReferenceArray<SlowInvocation> slots = new AtomicReferenceArray<>(size);
+            // duration of the fastest captured invocation once all slots are filled, only ever increases
+            private final AtomicLong threshold = new AtomicLong(Long.MIN_VALUE);
+
+            Interval(long epoch) {
+                this.epoch = epoch;
+            }
+
+            void offer(InvocationContext context, long durationNanos) {
+                if (durationNanos <= threshold.get()) {
+                    return;
+                }
+                SlowInvocation invocation = new SlowInvocation(
+                        context.getMethod().getDeclaringClass().getSimpleName(),
+                        context.getMethod().getName(),
+                        InvocationArguments.describe(context.getMethod(), context.getArgs()),
+                        clock.getTime() - TimeUnit.NANOSECONDS.toMillis(durationNanos),
+                        durationNanos,
+                        Thread.currentThread().getName());
+                while (true) {
+                    int victim = 0;
+                    SlowInvocation fastest = null;
+                    for (int i = 0; i < slots.length(); i++) {
+                        SlowInvocation slot = slots.get(i);
+                        if (slot == null) {
+                            victim = i;
+                            fastest = null;
+                            break;
+                        }
+                        if (fastest == null || slot.getDurationNanos() < fastest.getDurationNanos()) {
+                            victim = i;
+                            fastest = slot;
+                        }
+                    }
+                    if (fastest != null && fastest.getDurationNanos() >= durationNanos) {
+                        updateThreshold();
+                        return;
+                    }
+                    if (slots.compareAndSet(victim, fastest, invocation)) {
+                        updateThreshold();
+                        return;
+                    }
+                }
+            }
+
+            private void updateThreshold() {
+                long fastest = Long.MAX_VALUE;
+                for (int i = 0; i < slots.length(); i++) {
+                    SlowInvocation slot = slots.get(i);
+                    if (slot == null) {
+                        return;
+                    }
+                    fastest = Math.min(fastest, slot.getDurationNanos());
+                }
+                threshold.accumulateAndGet(fastest, Math::max);
+            }
+
+            List<SlowInvocation> slowest() {
+                List<SlowInvocation> slowest = new ArrayList<>(slots.length());
+                for (int i = 0; i < slots.length(); i++) {
+                    SlowInvocation slot = slots.get(i);
+                    if (slot != null) {
+                        slowest.add(slot);
+                    }
+                }
+                slowest.sort(SLOWEST_FIRST);
+                return ImmutableList.copyOf(slowest);
+            }
+        }
+    }
+
+    private static final class TickContext extends DefaultInvocationContext {
+        TickContext(long startTick, Object instance, Method method, @Nullable Object[] args) {
+            super(startTick, instance, method, args);
+        }
+    }
+
+}
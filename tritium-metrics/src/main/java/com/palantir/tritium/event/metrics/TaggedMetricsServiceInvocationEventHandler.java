@@ -18,15 +18,22 @@ package com.palantir.tritium.event.metrics;
 
 import static com.palantir.logsafe.Preconditions.checkNotNull;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Suppliers;
 import com.palantir.tritium.event.AbstractInvocationEventHandler;
-import com.palantir.tritium.event.DefaultInvocationContext;
+import com.palantir.tritium.event.AsyncCompletion;
 import com.palantir.tritium.event.InstrumentationProperties;
 import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.PooledInvocationContext;
 import com.palantir.tritium.metrics.registry.MetricName;
 import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -50,13 +57,42 @@ public class TaggedMetricsServiceInvocationEventHandler extends AbstractInvocati
 
     private final TaggedMetricRegistry taggedMetricRegistry;
     private final String serviceName;
+    private final boolean recordInFlight;
+    private final ConcurrentMap<Method, MethodMetrics> methodMetrics = new ConcurrentHashMap<>();
 
     public TaggedMetricsServiceInvocationEventHandler(
             TaggedMetricRegistry taggedMetricRegistry,
             String serviceName) {
+        this(taggedMetricRegistry, serviceName, false);
+    }
+
+    /**
+     * Creates a handler which, if {@code recordInFlight} is true, additionally registers the following gauges per
+     * method, with the same tags as the method's timer:
+     * <ul>
+     *     <li>{serviceName}-in-flight: invocations currently in flight</li>
+     *     <li>{serviceName}-in-flight-peak: the most invocations in flight during the current and previous
+     *     minute, unaffected by reads</li>
+     *     <li>{serviceName}-arrival-rate: the one minute exponentially weighted rate of invocations started per
+     *     second</li>
+     *     <li>{serviceName}-concurrency: the one minute exponentially weighted mean number of invocations in flight,
+     *     derived by Little's law</li>
+     * </ul>
+     * Invocations of asynchronous methods are in flight until their returned future completes. Handlers created for
+     * the same service name and registry share the gauges of each method.
+     *
+     * @param taggedMetricRegistry registry to register metrics in
+     * @param serviceName service name
+     * @param recordInFlight whether to register in-flight gauges
+     */
+    public TaggedMetricsServiceInvocationEventHandler(
+            TaggedMetricRegistry taggedMetricRegistry,
+            String serviceName,
+            boolean recordInFlight) {
         super(getEnabledSupplier(serviceName));
         this.taggedMetricRegistry = checkNotNull(taggedMetricRegistry, "metricRegistry");
         this.serviceName = checkNotNull(serviceName, "serviceName");
+        this.recordInFlight = recordInFlight;
     }
 
     private static BooleanSupplier getEnabledSupplier(final String serviceName) {
@@ -68,21 +104,34 @@ public class TaggedMetricsServiceInvocationEventHandler extends AbstractInvocati
             @Nonnull Object instance,
             @Nonnull Method method,
             @Nonnull Object[] args) {
-        return DefaultInvocationContext.of(instance, method, args);
+        InvocationContext context = PooledInvocationContext.withoutArgs(instance, method);
+        if (recordInFlight) {
+            methodMetrics(method).started();
+        }
+        return context;
     }
 
     @Override
     public final void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
         debugIfNullContext(context);
         if (context != null) {
-            long nanos = System.nanoTime() - context.getStartTimeNanos();
-            MetricName finalMetricName = MetricName.builder()
-                    .safeName(serviceName)
-                    .putSafeTags("service-name", context.getMethod().getDeclaringClass().getSimpleName())
-                    .putSafeTags("endpoint", context.getMethod().getName())
-                    .build();
-            taggedMetricRegistry.timer(finalMetricName)
-                    .update(nanos, TimeUnit.NANOSECONDS);
+            long startNanos = context.getStartTimeNanos();
+            MethodMetrics metrics = methodMetrics(context.getMethod());
+            PooledInvocationContext.release(context);
+            boolean deferred = metrics.async
+                    && AsyncCompletion.whenComplete(result, failure -> complete(metrics, startNanos, failure));
+            if (!deferred) {
+                metrics.success(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private void complete(MethodMetrics metrics, long startNanos, @Nullable Throwable failure) {
+        if (failure == null) {
+            metrics.success(System.nanoTime() - startNanos);
+        } else {
+            markGlobalFailure();
+            metrics.failure(failure.getClass(), System.nanoTime() - startNanos);
         }
     }
 
@@ -91,17 +140,85 @@ public class TaggedMetricsServiceInvocationEventHandler extends AbstractInvocati
         markGlobalFailure();
         debugIfNullContext(context);
         if (context != null) {
-            MetricName failuresMetricName = MetricName.builder()
-                    .safeName(serviceName + "-" + FAILURES_METRIC_NAME)
-                    .putSafeTags("service-name", context.getMethod().getDeclaringClass().getSimpleName())
-                    .putSafeTags("endpoint", context.getMethod().getName())
-                    .putSafeTags("cause", cause.getClass().getName())
-                    .build();
-            taggedMetricRegistry.meter(failuresMetricName).mark();
+            long nanos = System.nanoTime() - context.getStartTimeNanos();
+            methodMetrics(context.getMethod()).failure(cause.getClass(), nanos);
+            PooledInvocationContext.release(context);
+        }
+    }
+
+    private MethodMetrics methodMetrics(Method method) {
+        MethodMetrics metrics = methodMetrics.get(method);
+        if (metrics == null) {
+            metrics = methodMetrics.computeIfAbsent(method, MethodMetrics::new);
         }
+        return metrics;
     }
 
     private void markGlobalFailure() {
         taggedMetricRegistry.meter(FAILURES_METRIC).mark();
     }
+
+    /**
+     * Metrics for a single method, registered on first use and cached so that invocations do not need to build a
+     * {@link MetricName} and look it up in the registry.
+     */
+    private final class MethodMetrics {
+        private final String serviceNameTag;
+        private final String endpoint;
+        private final Supplier<Timer> timer;
+        private final ConcurrentMap<Class<?>, Meter> failures = new ConcurrentHashMap<>();
+        private final boolean async;
+        @Nullable private final InFlightMetrics inFlight;
+
+        MethodMetrics(Method method) {
+            this.async = AsyncCompletion.isAsync(method);
+            this.serviceNameTag = method.getDeclaringClass().getSimpleName();
+            this.endpoint = method.getName();
+            this.timer = Suppliers.memoize(() -> taggedMetricRegistry.timer(metricName(serviceName)));
+            this.inFlight = recordInFlight
+                    ? InFlightMetrics.register(taggedMetricRegistry, suffix -> metricName(serviceName + suffix))
+                    : null;
+        }
+
+        private MetricName metricName(String name) {
+            return MetricName.builder()
+                    .safeName(name)
+                    .putSafeTags("service-name", serviceNameTag)
+                    .putSafeTags("endpoint", endpoint)
+                    .build();
+        }
+
+        void started() {
+            if (inFlight != null) {
+                inFlight.start();
+            }
+        }
+
+        void success(long nanos) {
+            timer.get().update(nanos, TimeUnit.NANOSECONDS);
+            if (inFlight != null) {
+                inFlight.complete(nanos);
+            }
+        }
+
+        void failure(Class<?> causeClass, long nanos) {
+            failures(causeClass).mark();
+            if (inFlight != null) {
+                inFlight.complete(nanos);
+            }
+        }
+
+        Meter failures(Class<?> causeClass) {
+            Meter meter = failures.get(causeClass);
+            if (meter == null) {
+                meter = failures.computeIfAbsent(causeClass, clazz -> taggedMetricRegistry.meter(MetricName.builder()
+                        .safeName(serviceName + "-" + FAILURES_METRIC_NAME)
+                        .putSafeTags("service-name", serviceNameTag)
+                        .putSafeTags("endpoint", endpoint)
+                        .putSafeTags("cause", clazz.getName())
+                        .build()));
+            }
+            return meter;
+        }
+    }
 }
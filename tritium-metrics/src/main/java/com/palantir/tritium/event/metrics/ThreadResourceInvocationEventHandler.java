@@ -0,0 +1,180 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event.metrics;
+
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.codahale.metrics.Histogram;
+import com.google.common.base.Suppliers;
+import com.palantir.tritium.event.AbstractInvocationEventHandler;
+import com.palantir.tritium.event.DefaultInvocationContext;
+import com.palantir.tritium.event.FilteredInvocationEventHandler;
+import com.palantir.tritium.event.InstrumentationFilters;
+import com.palantir.tritium.event.InstrumentationProperties;
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * {@link InvocationEventHandler} that records the CPU time consumed and the bytes allocated by the invoking thread
+ * during each invocation, as tagged histograms named "{serviceName}-cpu-time" (nanoseconds) and
+ * "{serviceName}-allocated-bytes", with the same "service-name" and "endpoint" tags as
+ * {@link TaggedMetricsServiceInvocationEventHandler}.
+ * <p>
+ * Reading the thread counters costs far more than reading the clock, so this handler is usually combined with
+ * sampling using {@link #sampled(TaggedMetricRegistry, String, double)}. Measurements are only recorded when an
+ * invocation completes on the thread it started on, and each histogram is only recorded if the JVM supports and has
+ * enabled the corresponding {@link ThreadMXBean} measurement.
+ */
+public final class ThreadResourceInvocationEventHandler extends AbstractInvocationEventHandler<InvocationContext> {
+
+    private static final long UNSUPPORTED = -1L;
+
+    private final TaggedMetricRegistry taggedMetricRegistry;
+    private final String serviceName;
+    private final ThreadMXBean threadMxBean;
+    @Nullable private final com.sun.management.ThreadMXBean allocationMxBean;
+    private final ConcurrentMap<Method, MethodMetrics> methodMetrics = new ConcurrentHashMap<>();
+
+    public ThreadResourceInvocationEventHandler(TaggedMetricRegistry taggedMetricRegistry, String serviceName) {
+        super(InstrumentationProperties.getSystemPropertySupplier(checkNotNull(serviceName, "serviceName")));
+        this.taggedMetricRegistry = checkNotNull(taggedMetricRegistry, "taggedMetricRegistry");
+        this.serviceName = serviceName;
+        this.threadMxBean = ManagementFactory.getThreadMXBean();
+        this.allocationMxBean = (threadMxBean instanceof com.sun.management.ThreadMXBean)
+                ? (com.sun.management.ThreadMXBean) threadMxBean
+                : null;
+    }
+
+    /**
+     * Returns a handler which records the CPU time and allocations of a random sample of invocations.
+     *
+     * @param taggedMetricRegistry registry to record histograms in
+     * @param serviceName service name
+     * @param probability probability of recording each invocation, between 0 and 1
+     * @return sampling handler
+     */
+    public static InvocationEventHandler<InvocationContext> sampled(
+            TaggedMetricRegistry taggedMetricRegistry,
+            String serviceName,
+            double probability) {
+        return FilteredInvocationEventHandler.of(
+                new ThreadResourceInvocationEventHandler(taggedMetricRegistry, serviceName),
+                InstrumentationFilters.sampled(probability));
+    }
+
+    @Override
+    public InvocationContext preInvocation(@Nonnull Object instance, @Nonnull Method method, @Nonnull Object[] args) {
+        Thread thread = Thread.currentThread();
+        return new ResourceContext(instance, method, thread, cpuTimeNanos(), allocatedBytes(thread));
+    }
+
+    @Override
+    public void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
+        record(context);
+    }
+
+    @Override
+    public void onFailure(@Nullable InvocationContext context, @Nonnull Throwable cause) {
+        record(context);
+    }
+
+    private void record(@Nullable InvocationContext context) {
+        debugIfNullContext(context);
+        if (context instanceof ResourceContext) {
+            ResourceContext resourceContext = (ResourceContext) context;
+            Thread thread = Thread.currentThread();
+            if (resourceContext.thread == thread) {
+                MethodMetrics metrics = methodMetrics(context.getMethod());
+                long cpuTimeNanos = cpuTimeNanos();
+                if (cpuTimeNanos != UNSUPPORTED && resourceContext.startCpuTimeNanos != UNSUPPORTED) {
+                    metrics.cpuTime.get().update(cpuTimeNanos - resourceContext.startCpuTimeNanos);
+                }
+                long allocatedBytes = allocatedBytes(thread);
+                if (allocatedBytes != UNSUPPORTED && resourceContext.startAllocatedBytes != UNSUPPORTED) {
+                    metrics.allocatedBytes.get().update(allocatedBytes - resourceContext.startAllocatedBytes);
+                }
+            }
+        }
+    }
+
+    private long cpuTimeNanos() {
+        if (threadMxBean.isCurrentThreadCpuTimeSupported() && threadMxBean.isThreadCpuTimeEnabled()) {
+            return threadMxBean.getCurrentThreadCpuTime();
+        }
+        return UNSUPPORTED;
+    }
+
+    private long allocatedBytes(Thread thread) {
+        com.sun.management.ThreadMXBean bean = allocationMxBean;
+        if (bean != null && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean.getThreadAllocatedBytes(thread.getId());
+        }
+        return UNSUPPORTED;
+    }
+
+    private MethodMetrics methodMetrics(Method method) {
+        MethodMetrics metrics = methodMetrics.get(method);
+        if (metrics == null) {
+            metrics = methodMetrics.computeIfAbsent(method, MethodMetrics::new);
+        }
+        return metrics;
+    }
+
+    private static final class ResourceContext extends DefaultInvocationContext {
+        private final Thread thread;
+        private final long startCpuTimeNanos;
+        private final long startAllocatedBytes;
+
+        ResourceContext(Object instance, Method method, Thread thread, long startCpuTimeNanos,
+                long startAllocatedBytes) {
+            super(System.nanoTime(), instance, method, null);
+            this.thread = thread;
+            this.startCpuTimeNanos = startCpuTimeNanos;
+            this.startAllocatedBytes = startAllocatedBytes;
+        }
+    }
+
+    private final class MethodMetrics {
+        private final Supplier<Histogram> cpuTime;
+        private final Supplier<Histogram> allocatedBytes;
+
+        MethodMetrics(Method method) {
+            String serviceNameTag = method.getDeclaringClass().getSimpleName();
+            String endpoint = method.getName();
+            this.cpuTime = Suppliers.memoize(() -> taggedMetricRegistry.histogram(MetricName.builder()
+                    .safeName(serviceName + "-cpu-time")
+                    .putSafeTags("service-name", serviceNameTag)
+                    .putSafeTags("endpoint", endpoint)
+                    .build()));
+            this.allocatedBytes = Suppliers.memoize(() -> taggedMetricRegistry.histogram(MetricName.builder()
+                    .safeName(serviceName + "-allocated-bytes")
+                    .putSafeTags("service-name", serviceNameTag)
+                    .putSafeTags("endpoint", endpoint)
+                    .build()));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Registers gauges reporting how close {@link ThreadPoolExecutor} and {@link ForkJoinPool} executors are to
+ * saturation, replacing gauges previously registered for an executor with the same name.
+ * <p>
+ * The executor is only read, never reconfigured, and the gauges reference it weakly so that registering them does not
+ * keep an executor which is no longer used reachable; once it has been collected they report zero.
+ */
+final class ExecutorSaturationMetrics {
+
+    private ExecutorSaturationMetrics() {}
+
+    static void register(TaggedMetricRegistry registry, ExecutorService executor, String name) {
+        if (executor instanceof ThreadPoolExecutor) {
+            register(registry, (ThreadPoolExecutor) executor, name);
+        } else if (executor instanceof ForkJoinPool) {
+            register(registry, (ForkJoinPool) executor, name);
+        }
+    }
+
+    private static void register(TaggedMetricRegistry registry, ThreadPoolExecutor executor, String name) {
+        WeakReference<ThreadPoolExecutor> reference = new WeakReference<>(executor);
+        intGauge(registry, "queued", name, reference, pool -> pool.getQueue().size());
+        intGauge(registry, "queue.remaining-capacity", name, reference, pool -> pool.getQueue().remainingCapacity());
+        intGauge(registry, "active", name, reference, ThreadPoolExecutor::getActiveCount);
+        intGauge(registry, "pool.size", name, reference, ThreadPoolExecutor::getPoolSize);
+        intGauge(registry, "pool.max-size", name, reference, ThreadPoolExecutor::getMaximumPoolSize);
+    }
+
+    private static void register(TaggedMetricRegistry registry, ForkJoinPool executor, String name) {
+        WeakReference<ForkJoinPool> reference = new WeakReference<>(executor);
+        longGauge(registry, "steals", name, reference, ForkJoinPool::getStealCount);
+        longGauge(registry, "queued", name, reference, ForkJoinPool::getQueuedTaskCount);
+        intGauge(registry, "queued-submissions", name, reference, ForkJoinPool::getQueuedSubmissionCount);
+        intGauge(registry, "active", name, reference, ForkJoinPool::getActiveThreadCount);
+        intGauge(registry, "pool.size", name, reference, ForkJoinPool::getPoolSize);
+        intGauge(registry, "parallelism", name, reference, ForkJoinPool::getParallelism);
+    }
+
+    private static <E> void intGauge(
+            TaggedMetricRegistry registry,
+            String metricName,
+            String name,
+            WeakReference<E> reference,
+            ToIntFunction<E> value) {
+        gauge(registry, metricName, name, () -> {
+            E executor = reference.get();
+            return (executor == null) ? 0 : value.applyAsInt(executor);
+        });
+    }
+
+    private static <E> void longGauge(
+            TaggedMetricRegistry registry,
+            String metricName,
+            String name,
+            WeakReference<E> reference,
+            ToLongFunction<E> value) {
+        gauge(registry, metricName, name, () -> {
+            E executor = reference.get();
+            return (executor == null) ? 0L : value.applyAsLong(executor);
+        });
+    }
+
+    private static <T> void gauge(TaggedMetricRegistry registry, String metricName, String name, Gauge<T> gauge) {
+        MetricName taggedName = createMetricName(metricName, name);
+        registry.remove(taggedName);
+        registry.gauge(taggedName, gauge);
+    }
+
+    private static MetricName createMetricName(String metricName, String name) {
+        return MetricName.builder()
+                .safeName(MetricRegistry.name("executor", metricName))
+                .putSafeTags("executor", name)
+                .build();
+    }
+
+}
@@ -30,6 +30,8 @@ import com.google.common.cache.Cache;
 import com.google.common.collect.ImmutableSet;
 import com.palantir.logsafe.SafeArg;
 import com.palantir.logsafe.exceptions.SafeIllegalArgumentException;
+import com.palantir.tritium.event.AsyncInvocationEventHandler;
+import com.palantir.tritium.metrics.registry.MetricName;
 import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
@@ -138,7 +140,12 @@ public final class MetricRegistries {
 
     @Nullable
     private static Metric tryGetExistingMetric(MetricRegistry metrics, String name) {
-        return checkNotNull(metrics, "metrics").getMetrics().get(checkNotNull(name));
+        checkNotNull(metrics, "metrics");
+        checkNotNull(name, "name");
+        if (metrics instanceof MetricRegistryWithReservoirs) {
+            return ((MetricRegistryWithReservoirs) metrics).getMetric(name);
+        }
+        return metrics.getMetrics().get(name);
     }
 
     private static <T extends Metric> T addMetric(
@@ -150,7 +157,7 @@ public final class MetricRegistries {
         try {
             return metrics.register(name, newMetric);
         } catch (IllegalArgumentException e) {
-            // fall back to existing metric
+            // fall back to existing metric, which may have been registered concurrently and not be indexed yet
             Metric existingMetric = metrics.getMetrics().get(name);
             return getAndCheckExistingMetric(name, builder, existingMetric);
         }
@@ -242,7 +249,8 @@ public final class MetricRegistries {
      * Returns an instrumented {@link ScheduledExecutorService} that monitors the number of tasks submitted, running,
      * completed and also keeps a {@link com.codahale.metrics.Timer} for the task duration. Similar to
      * {@link com.codahale.metrics.InstrumentedScheduledExecutorService}, but produces tagged metrics to the
-     * specified {@link TaggedMetricRegistry}.
+     * specified {@link TaggedMetricRegistry}. Saturation gauges are registered for
+     * {@link java.util.concurrent.ScheduledThreadPoolExecutor} delegates, as for other thread pool executors.
      *
      * @param registry tagged metric registry
      * @param delegate executor service to instrument
@@ -253,10 +261,11 @@ public final class MetricRegistries {
             TaggedMetricRegistry registry,
             ScheduledExecutorService delegate,
             String name) {
-        return new TaggedMetricsScheduledExecutorService(
-                checkNotNull(delegate, "delegate"),
+        ExecutorSaturationMetrics.register(
                 checkNotNull(registry, "registry"),
+                checkNotNull(delegate, "delegate"),
                 checkNotNull(name, "name"));
+        return new TaggedMetricsScheduledExecutorService(delegate, registry, name);
     }
 
     /**
@@ -264,6 +273,15 @@ public final class MetricRegistries {
      * completed and also keeps a {@link com.codahale.metrics.Timer} for the task duration. Similar to
      * {@link com.codahale.metrics.InstrumentedExecutorService}, but produces tagged metrics to the specified
      * {@link TaggedMetricRegistry}.
+     * <p>
+     * Tasks which the delegate rejects by throwing a {@link java.util.concurrent.RejectedExecutionException} mark an
+     * "executor.rejected" meter. The delegate itself is not reconfigured, so tasks which its
+     * {@link java.util.concurrent.RejectedExecutionHandler} runs or discards instead are not counted.
+     * <p>
+     * If the delegate is a {@link java.util.concurrent.ThreadPoolExecutor}, gauges of its queue depth, remaining
+     * queue capacity, active threads, pool size and maximum pool size are registered. If it is a
+     * {@link java.util.concurrent.ForkJoinPool}, gauges of its steal count, queued tasks and submissions, active
+     * threads, pool size and parallelism are registered. The gauges do not keep the delegate reachable.
      *
      * @param registry tagged metric registry
      * @param delegate executor service to instrument
@@ -277,7 +295,70 @@ public final class MetricRegistries {
         if (delegate instanceof ScheduledExecutorService) {
             return instrument(registry, (ScheduledExecutorService) delegate, name);
         }
-        return new TaggedMetricsExecutorService(
+        ExecutorSaturationMetrics.register(
+                checkNotNull(registry, "registry"),
+                checkNotNull(delegate, "delegate"),
+                checkNotNull(name, "name"));
+        return new TaggedMetricsExecutorService(delegate, registry, name);
+    }
+
+    /**
+     * Returns an instrumented {@link ExecutorService} like {@link #instrument(TaggedMetricRegistry, ExecutorService,
+     * String)}, which only records the queued duration and duration of a random sample of tasks, reducing the
+     * overhead for executors running many short tasks. The submitted, running and completed metrics still count every
+     * task, while the counts and rates of the "executor.duration" and "executor.queued-duration" timers only reflect
+     * the sampled tasks, about one in {@code timingSampleInterval}, so throughput should be read from the
+     * "executor.completed" meter.
+     * <p>
+     * Sampling is not supported for {@link ScheduledExecutorService}s, which are instrumented with additional
+     * per-task scheduling metrics, so {@code timingSampleInterval} must be 1 for them.
+     *
+     * @param registry tagged metric registry
+     * @param delegate executor service to instrument
+     * @param name executor service name
+     * @param timingSampleInterval time one in this many tasks on average, 1 times every task
+     * @return instrumented executor service
+     * @throws IllegalArgumentException if {@code timingSampleInterval} is not positive, or is greater than 1 for a
+     *     {@link ScheduledExecutorService}
+     */
+    public static ExecutorService instrument(
+            TaggedMetricRegistry registry,
+            ExecutorService delegate,
+            String name,
+            int timingSampleInterval) {
+        checkArgument(timingSampleInterval > 0, "timingSampleInterval must be positive",
+                SafeArg.of("timingSampleInterval", timingSampleInterval));
+        if (delegate instanceof ScheduledExecutorService) {
+            checkArgument(timingSampleInterval == 1, "timingSampleInterval is not supported for scheduled executors",
+                    SafeArg.of("timingSampleInterval", timingSampleInterval));
+            return instrument(registry, (ScheduledExecutorService) delegate, name);
+        }
+        ExecutorSaturationMetrics.register(
+                checkNotNull(registry, "registry"),
+                checkNotNull(delegate, "delegate"),
+                checkNotNull(name, "name"));
+        return new TaggedMetricsExecutorService(delegate, registry, name, timingSampleInterval);
+    }
+
+    /**
+     * Returns an instrumented {@link ExecutorService} for executors which run each task on a new virtual thread, such
+     * as {@code Executors.newVirtualThreadPerTaskExecutor()}. Monitors the number of tasks started, live and completed,
+     * keeps a {@link com.codahale.metrics.Timer} for the task duration, and, on JDKs supporting flight recorder event
+     * streaming, records how often and for how long tasks pin their carrier thread ("executor.pinned") and how often
+     * their virtual threads could not be scheduled ("executor.submit-failed"). Events are streamed from the flight
+     * recorder until every executor instrumented this way has been shut down, so shut the returned executor down
+     * rather than only the delegate.
+     *
+     * @param registry tagged metric registry
+     * @param delegate virtual thread executor service to instrument
+     * @param name executor service name
+     * @return instrumented executor service
+     */
+    public static ExecutorService instrumentVirtualThreads(
+            TaggedMetricRegistry registry,
+            ExecutorService delegate,
+            String name) {
+        return new TaggedMetricsVirtualThreadExecutorService(
                 checkNotNull(delegate, "delegate"),
                 checkNotNull(registry, "registry"),
                 checkNotNull(name, "name"));
@@ -315,6 +396,32 @@ public final class MetricRegistries {
                 checkNotNull(name, "name"));
     }
 
+    /**
+     * Registers gauges for the number of invocations pending and dropped by the specified asynchronous handler, with
+     * the given name as the "handler" tag.
+     *
+     * @param registry tagged metric registry
+     * @param handler asynchronous handler to monitor
+     * @param name handler name
+     */
+    public static void registerAsyncHandler(
+            TaggedMetricRegistry registry,
+            AsyncInvocationEventHandler handler,
+            String name) {
+        checkNotNull(registry, "registry");
+        checkNotNull(handler, "handler");
+        checkNotNull(name, "name");
+        registry.gauge(asyncHandlerMetricName("pending", name), handler::getPendingEvents);
+        registry.gauge(asyncHandlerMetricName("dropped", name), handler::getDroppedEvents);
+    }
+
+    private static MetricName asyncHandlerMetricName(String metricName, String name) {
+        return MetricName.builder()
+                .safeName(MetricRegistry.name("tritium", "async", metricName))
+                .putSafeTags("handler", name)
+                .build();
+    }
+
     /**
      * Extracts the wrapped delegate if the input {@link SSLEngine} is instrumented, otherwise returns the input.
      * Some libraries (Conscrypt, for example) use <code>instanceof</code> checks and casts to configure specific
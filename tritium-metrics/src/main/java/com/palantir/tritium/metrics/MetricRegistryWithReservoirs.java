@@ -19,13 +19,23 @@ package com.palantir.tritium.metrics;
 import static com.palantir.logsafe.Preconditions.checkNotNull;
 
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
 import com.codahale.metrics.Reservoir;
 import com.codahale.metrics.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
+import javax.annotation.Nullable;
 
 final class MetricRegistryWithReservoirs extends MetricRegistry {
 
+    /**
+     * Index of registered metrics by name, kept in step with {@link #register} and {@link #remove} so that lookups do
+     * not need {@link #getMetrics()}, which copies the whole registry into a sorted map.
+     */
+    private final Map<String, Metric> index = new ConcurrentHashMap<>();
     private final HistogramMetricBuilder histogramMetricBuilder;
     private final TimerMetricBuilder timerMetricBuilder;
 
@@ -44,4 +54,32 @@ final class MetricRegistryWithReservoirs extends MetricRegistry {
     public Timer timer(String name) {
         return MetricRegistries.getOrAdd(this, name, timerMetricBuilder);
     }
+
+    @Override
+    public <T extends Metric> T register(String name, T metric) {
+        T registered = super.register(name, metric);
+        if (!(metric instanceof MetricSet)) {
+            index.put(name, metric);
+        }
+        return registered;
+    }
+
+    @Override
+    public boolean remove(String name) {
+        boolean removed = super.remove(name);
+        if (removed) {
+            index.remove(name);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the metric registered with the specified name without copying the registry. A metric registered
+     * concurrently may not be visible yet, in which case callers fall back to {@link #register}, which fails for
+     * existing names.
+     */
+    @Nullable
+    Metric getMetric(String name) {
+        return index.get(name);
+    }
 }
@@ -29,26 +29,42 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 final class TaggedMetricsExecutorService implements ExecutorService {
 
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
     private final ExecutorService delegate;
 
     private final Meter submitted;
+    private final Meter rejected;
     private final Counter running;
     private final Meter completed;
     private final Timer duration;
     private final Timer queuedDuration;
+    private final int timingSampleInterval;
 
     TaggedMetricsExecutorService(
             ExecutorService delegate,
             TaggedMetricRegistry registry,
             String name) {
+        this(delegate, registry, name, 1);
+    }
+
+    TaggedMetricsExecutorService(
+            ExecutorService delegate,
+            TaggedMetricRegistry registry,
+            String name,
+            int timingSampleInterval) {
         this.delegate = delegate;
+        this.timingSampleInterval = timingSampleInterval;
 
         this.submitted = registry.meter(createMetricName("submitted", name));
+        this.rejected = registry.meter(createMetricName("rejected", name));
         this.running = registry.counter(createMetricName("running", name));
         this.completed = registry.meter(createMetricName("completed", name));
         this.duration = registry.timer(createMetricName("duration", name));
@@ -58,25 +74,41 @@ final class TaggedMetricsExecutorService implements ExecutorService {
     @Override
     public void execute(Runnable task) {
         submitted.mark();
-        delegate.execute(new TaggedMetricsRunnable(task));
+        try {
+            delegate.execute(new TaggedMetricsRunnable(task));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
     public Future<?> submit(Runnable task) {
         submitted.mark();
-        return delegate.submit(new TaggedMetricsRunnable(task));
+        try {
+            return delegate.submit(new TaggedMetricsRunnable(task));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
     public <T> Future<T> submit(Runnable task, T result) {
         submitted.mark();
-        return delegate.submit(new TaggedMetricsRunnable(task), result);
+        try {
+            return delegate.submit(new TaggedMetricsRunnable(task), result);
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
     public <T> Future<T> submit(Callable<T> task) {
         submitted.mark();
-        return delegate.submit(new TaggedMetricsCallable<>(task));
+        try {
+            return delegate.submit(new TaggedMetricsCallable<>(task));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
@@ -143,11 +175,43 @@ final class TaggedMetricsExecutorService implements ExecutorService {
         return delegate.awaitTermination(timeout, unit);
     }
 
+    /** Counts a task rejected by the delegate before the exception is rethrown to the caller. */
+    private RejectedExecutionException rejected(RejectedExecutionException exception) {
+        rejected.mark();
+        return exception;
+    }
+
+    /** Returns the submission time of a task which should be timed, or {@link #NOT_TIMED}. */
+    private long submittedNanos() {
+        if (timingSampleInterval == 1 || ThreadLocalRandom.current().nextInt(timingSampleInterval) == 0) {
+            long nanos = System.nanoTime();
+            return nanos == NOT_TIMED ? nanos + 1 : nanos;
+        }
+        return NOT_TIMED;
+    }
+
+    private long started(long submittedNanos) {
+        running.inc();
+        if (submittedNanos == NOT_TIMED) {
+            return NOT_TIMED;
+        }
+        long startNanos = System.nanoTime();
+        queuedDuration.update(startNanos - submittedNanos, TimeUnit.NANOSECONDS);
+        return startNanos;
+    }
+
+    private void finished(long startNanos) {
+        if (startNanos != NOT_TIMED) {
+            duration.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+        running.dec();
+        completed.mark();
+    }
+
     private class TaggedMetricsRunnable implements Runnable {
 
         private final Runnable task;
-
-        private final Timer.Context queuedContext = queuedDuration.time();
+        private final long submittedNanos = submittedNanos();
 
         TaggedMetricsRunnable(Runnable task) {
             this.task = task;
@@ -155,13 +219,11 @@ final class TaggedMetricsExecutorService implements ExecutorService {
 
         @Override
         public void run() {
-            queuedContext.stop();
-            running.inc();
-            try (Timer.Context ignored = duration.time()) {
+            long startNanos = started(submittedNanos);
+            try {
                 task.run();
             } finally {
-                running.dec();
-                completed.mark();
+                finished(startNanos);
             }
         }
     }
@@ -169,8 +231,7 @@ final class TaggedMetricsExecutorService implements ExecutorService {
     private class TaggedMetricsCallable<T> implements Callable<T> {
 
         private final Callable<T> task;
-
-        private final Timer.Context queuedContext = queuedDuration.time();
+        private final long submittedNanos = submittedNanos();
 
         TaggedMetricsCallable(Callable<T> task) {
             this.task = task;
@@ -178,13 +239,11 @@ final class TaggedMetricsExecutorService implements ExecutorService {
 
         @Override
         public T call() throws Exception {
-            queuedContext.stop();
-            running.inc();
-            try (Timer.Context ignored = duration.time()) {
+            long startNanos = started(submittedNanos);
+            try {
                 return task.call();
             } finally {
-                running.dec();
-                completed.mark();
+                finished(startNanos);
             }
         }
     }
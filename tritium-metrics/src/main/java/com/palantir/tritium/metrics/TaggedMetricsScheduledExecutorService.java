@@ -21,24 +21,35 @@ import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
 import com.palantir.tritium.metrics.registry.MetricName;
 import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 
 final class TaggedMetricsScheduledExecutorService implements ScheduledExecutorService {
 
+    private static final long MAX_DELAY_NANOS = Long.MAX_VALUE >> 1;
+
     private final ScheduledExecutorService delegate;
 
     private final Meter submitted;
+    private final Meter rejected;
     private final Counter running;
     private final Meter completed;
     private final Timer duration;
@@ -47,6 +58,9 @@ final class TaggedMetricsScheduledExecutorService implements ScheduledExecutorSe
     private final Meter scheduledRepetitively;
     private final Counter scheduledOverrun;
     private final Histogram scheduledPercentOfPeriod;
+    private final Histogram scheduledLag;
+    private final NavigableSet<ScheduledLag> pendingLags = new ConcurrentSkipListSet<>();
+    private final AtomicLong lagSequence = new AtomicLong();
 
     TaggedMetricsScheduledExecutorService(
             ScheduledExecutorService delegate,
@@ -55,6 +69,7 @@ final class TaggedMetricsScheduledExecutorService implements ScheduledExecutorSe
         this.delegate = delegate;
 
         this.submitted = registry.meter(createMetricName("submitted", name));
+        this.rejected = registry.meter(createMetricName("rejected", name));
         this.running = registry.counter(createMetricName("running", name));
         this.completed = registry.meter(createMetricName("completed", name));
         this.duration = registry.timer(createMetricName("duration", name));
@@ -63,55 +78,96 @@ final class TaggedMetricsScheduledExecutorService implements ScheduledExecutorSe
         this.scheduledRepetitively = registry.meter(createMetricName("scheduled.repetitively", name));
         this.scheduledOverrun = registry.counter(createMetricName("scheduled.overrun", name));
         this.scheduledPercentOfPeriod = registry.histogram(createMetricName("scheduled.percent-of-period", name));
+        this.scheduledLag = registry.histogram(createMetricName("scheduled.lag", name));
+        MetricName maxLagName = createMetricName("scheduled.max-lag", name);
+        registry.remove(maxLagName);
+        registry.gauge(maxLagName, this::maxLagNanos);
     }
 
     @Override
     public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
         scheduledOnce.mark();
-        return delegate.schedule(new TaggedMetricsRunnable(task), delay, unit);
+        ScheduledLag lag = new ScheduledLag(delay, 0, unit);
+        try {
+            return lag.track(delegate.schedule(new TaggedMetricsScheduledRunnable(task, lag), delay, unit));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
     public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
         scheduledOnce.mark();
-        return delegate.schedule(new TaggedMetricsCallable<>(callable), delay, unit);
+        ScheduledLag lag = new ScheduledLag(delay, 0, unit);
+        try {
+            return lag.track(delegate.schedule(new TaggedMetricsScheduledCallable<>(callable, lag), delay, unit));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
     public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
         scheduledRepetitively.mark();
-        return delegate.scheduleAtFixedRate(
-                new TaggedMetricsScheduledRunnable(task, period, unit), initialDelay, period, unit);
+        ScheduledLag lag = new ScheduledLag(initialDelay, period, unit);
+        try {
+            return lag.track(delegate.scheduleAtFixedRate(
+                    new TaggedMetricsScheduledRunnable(task, lag), initialDelay, period, unit));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
     public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
         scheduledRepetitively.mark();
-        return delegate.scheduleWithFixedDelay(new TaggedMetricsRunnable(task), initialDelay, delay, unit);
+        ScheduledLag lag = new ScheduledLag(initialDelay, -delay, unit);
+        try {
+            return lag.track(delegate.scheduleWithFixedDelay(
+                    new TaggedMetricsScheduledRunnable(task, lag), initialDelay, delay, unit));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
     public void execute(Runnable task) {
         submitted.mark();
-        delegate.execute(new TaggedMetricsRunnable(task));
+        try {
+            delegate.execute(new TaggedMetricsRunnable(task));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
     public <T> Future<T> submit(Callable<T> task) {
         submitted.mark();
-        return delegate.submit(new TaggedMetricsCallable<>(task));
+        try {
+            return delegate.submit(new TaggedMetricsCallable<>(task));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
     public <T> Future<T> submit(Runnable task, T result) {
         submitted.mark();
-        return delegate.submit(new TaggedMetricsRunnable(task), result);
+        try {
+            return delegate.submit(new TaggedMetricsRunnable(task), result);
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
     public Future<?> submit(Runnable task) {
         submitted.mark();
-        return delegate.submit(new TaggedMetricsRunnable(task));
+        try {
+            return delegate.submit(new TaggedMetricsRunnable(task));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     @Override
@@ -159,7 +215,12 @@ final class TaggedMetricsScheduledExecutorService implements ScheduledExecutorSe
 
     @Override
     public List<Runnable> shutdownNow() {
-        return delegate.shutdownNow();
+        List<Runnable> pending = delegate.shutdownNow();
+        // tasks drained from the delegate's queue will never run, but their futures are not cancelled
+        for (ScheduledLag lag : pendingLags) {
+            lag.end();
+        }
+        return pending;
     }
 
     @Override
@@ -197,30 +258,235 @@ final class TaggedMetricsScheduledExecutorService implements ScheduledExecutorSe
         }
     }
 
+    /** Counts a task rejected by the delegate before the exception is rethrown to the caller. */
+    private RejectedExecutionException rejected(RejectedExecutionException exception) {
+        rejected.mark();
+        return exception;
+    }
+
+    @VisibleForTesting
+    int pendingLagCount() {
+        return pendingLags.size();
+    }
+
+    /**
+     * Returns the longest time any scheduled task waiting to run is overdue, in nanoseconds, from the waiting task
+     * which is expected to start first. Tasks cancelled other than through the returned futures, e.g. periodic tasks
+     * cancelled by shutting down the delegate, are removed once they reach the head of the set.
+     */
+    private long maxLagNanos() {
+        ScheduledLag earliest;
+        while ((earliest = Iterables.getFirst(pendingLags, null)) != null && earliest.isDone()) {
+            earliest.end();
+        }
+        return (earliest == null) ? 0 : Math.max(0, System.nanoTime() - earliest.expectedNanos);
+    }
+
+    /**
+     * Limits a delay so that expected start times can be compared by subtraction without overflow, as
+     * {@link java.util.concurrent.ScheduledThreadPoolExecutor} does for its trigger times.
+     */
+    private static long clampDelay(long delayNanos) {
+        return Math.max(-MAX_DELAY_NANOS, Math.min(MAX_DELAY_NANOS, delayNanos));
+    }
+
+    /**
+     * Tracks when a scheduled task is expected to start. The period follows the convention of
+     * {@link java.util.concurrent.ScheduledThreadPoolExecutor}: positive for fixed rate, negative for fixed delay and
+     * zero for one-shot tasks.
+     * <p>
+     * A task is in {@link #pendingLags}, ordered by expected start time, only while it is waiting to run, and is
+     * removed as soon as it starts, ends or is cancelled, so the set does not grow with tasks which will never run.
+     * The expected start time is only modified while the task is not in the set, and all transitions hold the lag's
+     * lock, which is uncontended except when a task starts while it is being scheduled.
+     */
+    private final class ScheduledLag implements Comparable<ScheduledLag> {
+        private final long id = lagSequence.getAndIncrement();
+        private final long periodNanos;
+        private volatile long expectedNanos;
+        // guarded by this
+        private boolean waiting = true;
+        private boolean ended;
+        @Nullable
+        private volatile Future<?> future;
+
+        ScheduledLag(long delay, long period, TimeUnit unit) {
+            this.expectedNanos = System.nanoTime() + clampDelay(unit.toNanos(delay));
+            this.periodNanos = clampDelay(unit.toNanos(period));
+        }
+
+        /**
+         * Tracks the lag of the task once it has been scheduled, so that tasks rejected by the delegate are not
+         * tracked, and returns a future which stops tracking the task when cancelled.
+         */
+        <V> ScheduledFuture<V> track(ScheduledFuture<V> scheduled) {
+            this.future = scheduled;
+            synchronized (this) {
+                if (waiting && !ended) {
+                    pendingLags.add(this);
+                }
+            }
+            return new TrackedScheduledFuture<>(scheduled, this);
+        }
+
+        /** Records how late the task started and returns the start time. */
+        synchronized long started() {
+            long startNanos = System.nanoTime();
+            pendingLags.remove(this);
+            waiting = false;
+            scheduledLag.update(Math.max(0, startNanos - expectedNanos));
+            return startNanos;
+        }
+
+        /** Records that a run completed normally, after which a periodic task waits for its next run. */
+        synchronized void finished(long endNanos) {
+            if (periodNanos > 0) {
+                expectedNanos += periodNanos;
+            } else if (periodNanos < 0) {
+                expectedNanos = endNanos - periodNanos;
+            } else {
+                end();
+                return;
+            }
+            waiting = true;
+            if (!ended) {
+                pendingLags.add(this);
+            }
+        }
+
+        /** Stops tracking the task, which will not run again. */
+        synchronized void end() {
+            ended = true;
+            pendingLags.remove(this);
+        }
+
+        boolean isDone() {
+            Future<?> scheduled = future;
+            return scheduled != null && scheduled.isDone();
+        }
+
+        @Override
+        public int compareTo(ScheduledLag other) {
+            long difference = expectedNanos - other.expectedNanos;
+            if (difference != 0) {
+                return difference < 0 ? -1 : 1;
+            }
+            return Long.compare(id, other.id);
+        }
+    }
+
+    /** Future of a scheduled task which stops tracking the task's lag when cancelled. */
+    private static final class TrackedScheduledFuture<V> implements ScheduledFuture<V> {
+        private final ScheduledFuture<V> delegate;
+        private final ScheduledLag lag;
+
+        TrackedScheduledFuture(ScheduledFuture<V> delegate, ScheduledLag lag) {
+            this.delegate = delegate;
+            this.lag = lag;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = delegate.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                lag.end();
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return delegate.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return delegate.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return delegate.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return delegate.get(timeout, unit);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return delegate.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return delegate.compareTo(other);
+        }
+    }
+
     private class TaggedMetricsScheduledRunnable implements Runnable {
 
         private final Runnable task;
-        private final long periodInNanos;
+        private final ScheduledLag lag;
 
-        TaggedMetricsScheduledRunnable(Runnable task, long period, TimeUnit unit) {
+        TaggedMetricsScheduledRunnable(Runnable task, ScheduledLag lag) {
             this.task = task;
-            this.periodInNanos = unit.toNanos(period);
+            this.lag = lag;
         }
 
         @Override
         public void run() {
             running.inc();
-            Timer.Context context = duration.time();
+            long startNanos = lag.started();
+            boolean succeeded = false;
             try {
                 task.run();
+                succeeded = true;
             } finally {
-                long elapsed = context.stop();
+                long endNanos = System.nanoTime();
+                long elapsed = endNanos - startNanos;
+                duration.update(elapsed, TimeUnit.NANOSECONDS);
                 running.dec();
                 completed.mark();
-                if (elapsed > periodInNanos) {
-                    scheduledOverrun.inc();
+                if (lag.periodNanos > 0) {
+                    if (elapsed > lag.periodNanos) {
+                        scheduledOverrun.inc();
+                    }
+                    scheduledPercentOfPeriod.update((100L * elapsed) / lag.periodNanos);
+                }
+                // a periodic task which throws is not run again
+                if (succeeded) {
+                    lag.finished(endNanos);
+                } else {
+                    lag.end();
                 }
-                scheduledPercentOfPeriod.update((100L * elapsed) / periodInNanos);
+            }
+        }
+    }
+
+    private class TaggedMetricsScheduledCallable<T> implements Callable<T> {
+
+        private final Callable<T> task;
+        private final ScheduledLag lag;
+
+        TaggedMetricsScheduledCallable(Callable<T> task, ScheduledLag lag) {
+            this.task = task;
+            this.lag = lag;
+        }
+
+        @Override
+        public T call() throws Exception {
+            running.inc();
+            long startNanos = lag.started();
+            try {
+                return task.call();
+            } finally {
+                long endNanos = System.nanoTime();
+                duration.update(endNanos - startNanos, TimeUnit.NANOSECONDS);
+                running.dec();
+                completed.mark();
+                lag.finished(endNanos);
             }
         }
     }
@@ -0,0 +1,210 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+
+final class TaggedMetricsVirtualThreadExecutorService implements ExecutorService {
+
+    private final ExecutorService delegate;
+
+    private final Meter started;
+    private final Counter live;
+    private final Meter completed;
+    private final Timer duration;
+    private final VirtualThreadEvents.Sink events;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    TaggedMetricsVirtualThreadExecutorService(
+            ExecutorService delegate,
+            TaggedMetricRegistry registry,
+            String name) {
+        this.delegate = delegate;
+
+        this.started = registry.meter(createMetricName("started", name));
+        this.live = registry.counter(createMetricName("live", name));
+        this.completed = registry.meter(createMetricName("completed", name));
+        this.duration = registry.timer(createMetricName("duration", name));
+        this.events = new VirtualThreadEvents.Sink(
+                registry.timer(createMetricName("pinned", name)),
+                registry.meter(createMetricName("submit-failed", name)));
+        VirtualThreadEvents.acquire();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        delegate.execute(new TaggedMetricsRunnable(task));
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return delegate.submit(new TaggedMetricsRunnable(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return delegate.submit(new TaggedMetricsRunnable(task), result);
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return delegate.submit(new TaggedMetricsCallable<>(task));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return delegate.invokeAll(instrument(tasks));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return delegate.invokeAll(instrument(tasks), timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+            throws ExecutionException, InterruptedException {
+        return delegate.invokeAny(instrument(tasks));
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        return delegate.invokeAny(instrument(tasks), timeout, unit);
+    }
+
+    private <T> Collection<TaggedMetricsCallable<T>> instrument(Collection<? extends Callable<T>> tasks) {
+        List<TaggedMetricsCallable<T>> instrumented = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            instrumented.add(new TaggedMetricsCallable<>(task));
+        }
+        return instrumented;
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+        releaseEvents();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = delegate.shutdownNow();
+        releaseEvents();
+        return tasks;
+    }
+
+    /** Stops streaming virtual thread events for this executor, which is shut down and cannot start new tasks. */
+    private void releaseEvents() {
+        if (released.compareAndSet(false, true)) {
+            VirtualThreadEvents.release();
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Nullable
+    private VirtualThreadEvents.Sink started() {
+        started.mark();
+        live.inc();
+        return VirtualThreadEvents.register(events);
+    }
+
+    private void finished(long startNanos, @Nullable VirtualThreadEvents.Sink enclosing) {
+        duration.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        live.dec();
+        completed.mark();
+        VirtualThreadEvents.unregister(events, enclosing);
+    }
+
+    private class TaggedMetricsRunnable implements Runnable {
+
+        private final Runnable task;
+
+        TaggedMetricsRunnable(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            VirtualThreadEvents.Sink enclosing = started();
+            long startNanos = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                finished(startNanos, enclosing);
+            }
+        }
+    }
+
+    private class TaggedMetricsCallable<T> implements Callable<T> {
+
+        private final Callable<T> task;
+
+        TaggedMetricsCallable(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public T call() throws Exception {
+            VirtualThreadEvents.Sink enclosing = started();
+            long startNanos = System.nanoTime();
+            try {
+                return task.call();
+            } finally {
+                finished(startNanos, enclosing);
+            }
+        }
+    }
+
+    private static MetricName createMetricName(String metricName, String name) {
+        return MetricName.builder()
+                .safeName(MetricRegistry.name("executor", metricName))
+                .putSafeTags("executor", name)
+                .build();
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.metrics;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the JDK's {@code jdk.VirtualThreadPinned} and {@code jdk.VirtualThreadSubmitFailed} flight recorder events
+ * and attributes them to the instrumented executors whose tasks were running on the affected virtual threads.
+ * <p>
+ * Event streaming requires JDK 14 or later and virtual threads JDK 21 or later, while Tritium targets Java 8, so the
+ * flight recorder API is accessed reflectively; on older JDKs no events are recorded. Events are delivered by the
+ * flight recorder about once a second, so the thread of each task is remembered for a short grace period after the
+ * task finishes, bounded in size so that late events are dropped rather than memory grown when many tasks finish
+ * within the grace period. The JDK only records pinning which lasts at least 20 milliseconds by default.
+ * <p>
+ * The recording stream is opened when the first instrumented executor is created and closed once every instrumented
+ * executor has been shut down. Threads are only tracked while the stream is open, so executors cost nothing beyond
+ * their task metrics on JDKs which cannot stream events.
+ * <p>
+ * A {@code jdk.VirtualThreadSubmitFailed} event is only attributed if the thread had already started running a task,
+ * i.e. the scheduler failed to resume the thread after it parked. Failing to start a thread is reported to the caller
+ * of the executor as a {@link java.util.concurrent.RejectedExecutionException} and the event is not counted, as the
+ * thread never ran an instrumented task.
+ */
+final class VirtualThreadEvents {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadEvents.class);
+
+    static final String PINNED = "jdk.VirtualThreadPinned";
+    static final String SUBMIT_FAILED = "jdk.VirtualThreadSubmitFailed";
+
+    private static final int MAX_FINISHED_THREADS = 10_000;
+
+    private static final AtomicBoolean unsupported = new AtomicBoolean();
+    // executors and stream are guarded by lock
+    private static final Object lock = new Object();
+    private static int executors;
+    @Nullable
+    private static AutoCloseable stream;
+    private static volatile boolean streaming;
+
+    private static final ConcurrentMap<Long, Sink> running = new ConcurrentHashMap<>();
+    private static final Cache<Long, Sink> finished = CacheBuilder.newBuilder()
+            .maximumSize(MAX_FINISHED_THREADS)
+            .expireAfterWrite(10, TimeUnit.SECONDS)
+            .build();
+
+    private VirtualThreadEvents() {}
+
+    /**
+     * Starts streaming events in the background for a newly created executor, unless already streaming for another.
+     * Each call must be matched by a call to {@link #release}.
+     */
+    static void acquire() {
+        acquire(VirtualThreadEvents::openRecordingStream);
+    }
+
+    @VisibleForTesting
+    static void acquire(Supplier<AutoCloseable> openStream) {
+        synchronized (lock) {
+            if (executors++ == 0) {
+                stream = openStream.get();
+                streaming = stream != null;
+            }
+        }
+    }
+
+    /** Stops streaming events once every executor which {@link #acquire acquired} the stream has released it. */
+    static void release() {
+        synchronized (lock) {
+            if (--executors == 0) {
+                streaming = false;
+                running.clear();
+                finished.invalidateAll();
+                AutoCloseable current = stream;
+                stream = null;
+                if (current != null) {
+                    try {
+                        current.close();
+                    } catch (Exception e) {
+                        log.warn("Failed to close virtual thread event stream", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Attributes events of the current thread to the specified sink until {@link #unregister} is called with the
+     * returned sink, which is the sink of an enclosing task running on the same thread, if any. Does nothing unless
+     * events are being streamed.
+     */
+    @Nullable
+    static Sink register(Sink sink) {
+        if (!streaming) {
+            return null;
+        }
+        return running.put(Thread.currentThread().getId(), sink);
+    }
+
+    /** Stops attributing events of the current thread to the specified sink, once its grace period has passed. */
+    static void unregister(Sink sink, @Nullable Sink enclosing) {
+        if (!streaming) {
+            return;
+        }
+        long threadId = Thread.currentThread().getId();
+        if (enclosing == null) {
+            running.remove(threadId);
+        } else {
+            running.put(threadId, enclosing);
+        }
+        finished.put(threadId, sink);
+    }
+
+    @VisibleForTesting
+    static boolean isRunning(long threadId) {
+        return running.containsKey(threadId);
+    }
+
+    @Nullable
+    private static Sink sink(long threadId) {
+        Sink sink = running.get(threadId);
+        return (sink != null) ? sink : finished.getIfPresent(threadId);
+    }
+
+    @VisibleForTesting
+    static void pinned(long threadId, Duration duration) {
+        Sink sink = sink(threadId);
+        if (sink != null) {
+            sink.pinned.update(duration.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @VisibleForTesting
+    static void submitFailed(long threadId) {
+        Sink sink = sink(threadId);
+        if (sink != null) {
+            sink.submitFailed.mark();
+        }
+    }
+
+    /** Returns the started recording stream, or null if this JDK cannot stream the events. */
+    @Nullable
+    private static AutoCloseable openRecordingStream() {
+        if (unsupported.get()) {
+            return null;
+        }
+        try {
+            return startRecordingStream();
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            if (unsupported.compareAndSet(false, true)) {
+                log.info("Virtual thread pinning metrics require JDK flight recorder event streaming", e);
+            }
+            return null;
+        }
+    }
+
+    private static AutoCloseable startRecordingStream() throws ReflectiveOperationException {
+        Class<?> streamClass = Class.forName("jdk.jfr.consumer.RecordingStream");
+        Class<?> eventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+        Method getThread = eventClass.getMethod("getThread");
+        Method getDuration = eventClass.getMethod("getDuration");
+        Method getLong = eventClass.getMethod("getLong", String.class);
+        Method getJavaThreadId = Class.forName("jdk.jfr.consumer.RecordedThread").getMethod("getJavaThreadId");
+
+        AutoCloseable recordingStream = (AutoCloseable) streamClass.getConstructor().newInstance();
+        Method enable = streamClass.getMethod("enable", String.class);
+        enable.invoke(recordingStream, PINNED);
+        enable.invoke(recordingStream, SUBMIT_FAILED);
+        Method onEvent = streamClass.getMethod("onEvent", String.class, Consumer.class);
+        onEvent.invoke(recordingStream, PINNED, (Consumer<Object>) event -> {
+            Object thread = invoke(getThread, event);
+            Object threadId = thread == null ? null : invoke(getJavaThreadId, thread);
+            Object duration = invoke(getDuration, event);
+            if (threadId instanceof Long && duration instanceof Duration) {
+                pinned((Long) threadId, (Duration) duration);
+            }
+        });
+        onEvent.invoke(recordingStream, SUBMIT_FAILED, (Consumer<Object>) event -> {
+            Object threadId = invoke(getLong, event, "javaThreadId");
+            if (threadId instanceof Long) {
+                submitFailed((Long) threadId);
+            }
+        });
+        streamClass.getMethod("startAsync").invoke(recordingStream);
+        return recordingStream;
+    }
+
+    // exceptions must not escape to the recording stream, which would stop delivering events
+    @Nullable
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Failed to read virtual thread event", e);
+            return null;
+        }
+    }
+
+    /** Metrics of one instrumented executor. */
+    static final class Sink {
+        private final Timer pinned;
+        private final Meter submitFailed;
+
+        Sink(Timer pinned, Meter submitFailed) {
+            this.pinned = pinned;
+            this.submitFailed = submitFailed;
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinaryEventLogInvocationEventHandlerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testWritesAndDecodesRecords() throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        Method length = String.class.getMethod("length");
+        Method isEmpty = String.class.getMethod("isEmpty");
+
+        try (BinaryEventLogInvocationEventHandler handler = new BinaryEventLogInvocationEventHandler(file, "test", 8)) {
+            handler.onSuccess(handler.preInvocation("a", length, new Object[0]), 1);
+            handler.onFailure(handler.preInvocation("a", length, new Object[0]), new RuntimeException());
+            handler.onSuccess(handler.preInvocation("b", isEmpty, new Object[0]), false);
+        }
+
+        List<String> lines = csv(file);
+        assertThat(lines).hasSize(4);
+        assertThat(lines.get(0)).isEqualTo("sequence,method,start,start_epoch_nanos,duration_nanos,outcome,thread_id");
+        assertThat(lines.get(1)).startsWith("0,String.length,").endsWith(",success," + Thread.currentThread().getId());
+        assertThat(lines.get(2)).startsWith("1,String.length,").contains(",failure,");
+        assertThat(lines.get(3)).startsWith("2,String.isEmpty,").contains(",success,");
+    }
+
+    @Test
+    public void testOverwritesOldestRecords() throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        Method length = String.class.getMethod("length");
+
+        try (BinaryEventLogInvocationEventHandler handler = new BinaryEventLogInvocationEventHandler(file, "test", 4)) {
+            for (int i = 0; i < 6; i++) {
+                handler.onSuccess(handler.preInvocation("a", length, new Object[0]), 1);
+            }
+        }
+
+        assertThat(BinaryEventLogDecoder.read(file).size()).isEqualTo(4);
+        assertThat(csv(file)).extracting(line -> line.substring(0, line.indexOf(',')))
+                .containsExactly("sequence", "2", "3", "4", "5");
+    }
+
+    @Test
+    public void testRecordsUnknownMethodsWhenDictionaryIsFull() throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        try (BinaryEventLogInvocationEventHandler handler =
+                new BinaryEventLogInvocationEventHandler(file, "test", 4, 0)) {
+            handler.onSuccess(handler.preInvocation("a", String.class.getMethod("length"), new Object[0]), 1);
+        }
+
+        assertThat(csv(file).get(1)).startsWith("0,<unknown>,");
+    }
+
+    @Test
+    public void testWritesHistograms() throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        Method length = String.class.getMethod("length");
+        Method isEmpty = String.class.getMethod("isEmpty");
+        try (BinaryEventLogInvocationEventHandler handler = new BinaryEventLogInvocationEventHandler(file, "test", 8)) {
+            handler.onSuccess(handler.preInvocation("a", length, new Object[0]), 1);
+            handler.onSuccess(handler.preInvocation("a", length, new Object[0]), 1);
+            handler.onSuccess(handler.preInvocation("b", isEmpty, new Object[0]), false);
+        }
+
+        File hlog = temporaryFolder.newFile();
+        try (OutputStream out = new FileOutputStream(hlog)) {
+            BinaryEventLogDecoder.read(file).writeHistograms(out);
+        }
+
+        Map<String, Long> counts = new HashMap<>();
+        HistogramLogReader reader = new HistogramLogReader(hlog);
+        try {
+            EncodableHistogram histogram;
+            while ((histogram = reader.nextIntervalHistogram()) != null) {
+                counts.merge(histogram.getTag(), ((Histogram) histogram).getTotalCount(), Long::sum);
+            }
+        } finally {
+            reader.close();
+        }
+        assertThat(counts).containsOnly(
+                entry("String.length", 2L),
+                entry("String.isEmpty", 1L));
+    }
+
+    @Test
+    public void testCommandLine() throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        Method length = String.class.getMethod("length");
+        try (BinaryEventLogInvocationEventHandler handler = new BinaryEventLogInvocationEventHandler(file, "test", 8)) {
+            handler.onSuccess(handler.preInvocation("a", length, new Object[0]), 1);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryEventLogDecoder.run(new String[] {"csv", file.toString()}, bytes);
+        assertThat(new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\\R")).hasSize(2);
+
+        assertThatThrownBy(() -> BinaryEventLogDecoder.run(new String[] {"xml", file.toString()}, bytes))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BinaryEventLogDecoder.run(new String[0], bytes))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<String> csv(Path file) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryEventLogDecoder.read(file).writeCsv(bytes);
+        return Arrays.asList(new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\\R"));
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import com.palantir.tritium.event.DefaultInvocationContext;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HdrHistogramLogInvocationEventHandlerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testWritesTaggedIntervalHistograms() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        Method length = String.class.getMethod("length");
+        Method isEmpty = String.class.getMethod("isEmpty");
+
+        HdrHistogramLogInvocationEventHandler handler = HdrHistogramLogInvocationEventHandler.create(
+                directory.toPath(), "test", 1, TimeUnit.HOURS);
+        handler.onSuccess(handler.preInvocation("a", length, new Object[0]), 1);
+        handler.onFailure(handler.preInvocation("a", length, new Object[0]), new RuntimeException());
+        handler.writeIntervals();
+        handler.onSuccess(DefaultInvocationContext.of("b", isEmpty, null), false);
+        handler.close();
+
+        File[] files = directory.listFiles();
+        assertThat(files).hasSize(1);
+        assertThat(files[0].getName()).startsWith("test.").endsWith(".hlog");
+
+        Map<String, Long> counts = new HashMap<>();
+        HistogramLogReader reader = new HistogramLogReader(files[0]);
+        try {
+            EncodableHistogram histogram;
+            while ((histogram = reader.nextIntervalHistogram()) != null) {
+                counts.merge(histogram.getTag(), ((Histogram) histogram).getTotalCount(), Long::sum);
+            }
+        } finally {
+            reader.close();
+        }
+        assertThat(counts).containsOnly(
+                entry("String.length", 2L),
+                entry("String.isEmpty", 1L));
+    }
+
+    @Test
+    public void testStartsNewFileAfterConfiguredIntervals() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        HdrHistogramLogInvocationEventHandler handler = HdrHistogramLogInvocationEventHandler.create(
+                directory.toPath(), "test", 1, TimeUnit.HOURS, 1);
+        handler.writeIntervals();
+        handler.writeIntervals();
+        handler.writeIntervals();
+        handler.close();
+
+        assertThat(directory.listFiles()).hasSize(3);
+    }
+
+}
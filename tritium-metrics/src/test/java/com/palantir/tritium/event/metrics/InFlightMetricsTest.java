@@ -0,0 +1,85 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Gauge;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class InFlightMetricsTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+    private final InFlightMetrics metrics = new InFlightMetrics(new Clock() {
+        @Override
+        public long getTick() {
+            return ticker.get();
+        }
+    });
+
+    @Test
+    public void testInFlightAndPeak() {
+        Gauge<Long> inFlight = metrics;
+        Gauge<Long> peak = metrics.peakGauge();
+
+        metrics.start();
+        metrics.start();
+        metrics.start();
+        metrics.complete(1);
+        metrics.complete(1);
+        assertThat(inFlight.getValue()).isEqualTo(1);
+        assertThat(peak.getValue()).isEqualTo(3);
+        // reading the peak does not reset it
+        assertThat(peak.getValue()).isEqualTo(3);
+
+        // the previous interval's peak is reported until another interval has passed
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertThat(peak.getValue()).isEqualTo(3);
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertThat(peak.getValue()).isEqualTo(1);
+
+        metrics.complete(1);
+        metrics.complete(1);
+        assertThat(inFlight.getValue()).isZero();
+    }
+
+    @Test
+    public void testLittlesLaw() {
+        Gauge<Double> arrivalRate = metrics.arrivalRateGauge();
+        Gauge<Double> concurrency = metrics.meanConcurrencyGauge();
+
+        // 10 invocations per second each taking 200ms keep two in flight on average
+        for (int second = 0; second < 10; second++) {
+            for (int i = 0; i < 10; i++) {
+                metrics.start();
+                metrics.complete(TimeUnit.MILLISECONDS.toNanos(200));
+            }
+            ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        }
+
+        assertThat(arrivalRate.getValue()).isCloseTo(10.0, within(0.001));
+        assertThat(concurrency.getValue()).isCloseTo(2.0, within(0.001));
+        // reading the rates does not reset them
+        assertThat(arrivalRate.getValue()).isCloseTo(10.0, within(0.001));
+        assertThat(concurrency.getValue()).isCloseTo(2.0, within(0.001));
+    }
+
+}
@@ -65,6 +65,29 @@ public class MetricsInvocationEventHandlerTest {
         assertThat(metricRegistry.getMeters().get("failures").getCount()).isEqualTo(1L);
     }
 
+    @Test
+    public void testRepeatedInvocations() throws Exception {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        MetricsInvocationEventHandler handler = new MetricsInvocationEventHandler(metricRegistry, "test");
+
+        InvocationContext context = mock(InvocationContext.class);
+        when(context.getMethod()).thenReturn(String.class.getDeclaredMethod("length"));
+
+        handler.onSuccess(context, 1);
+        handler.onSuccess(context, 2);
+        handler.onFailure(context, new IllegalStateException("first"));
+        handler.onFailure(context, new IllegalArgumentException("second"));
+        handler.onFailure(context, new IllegalArgumentException("third"));
+
+        assertThat(metricRegistry.timer("test.length").getCount()).isEqualTo(5L);
+        assertThat(metricRegistry.meter("test.length.failures").getCount()).isEqualTo(3L);
+        assertThat(metricRegistry.meter("test.length.failures.java.lang.IllegalStateException").getCount())
+                .isEqualTo(1L);
+        assertThat(metricRegistry.meter("test.length.failures.java.lang.IllegalArgumentException").getCount())
+                .isEqualTo(2L);
+        assertThat(metricRegistry.getMeters().get("failures").getCount()).isEqualTo(3L);
+    }
+
     @Test
     public void testOnSuccessNullContext() {
         MetricRegistry metricRegistry = new MetricRegistry();
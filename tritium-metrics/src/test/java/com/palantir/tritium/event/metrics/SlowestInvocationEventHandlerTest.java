@@ -0,0 +1,148 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.google.common.collect.ImmutableList;
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class SlowestInvocationEventHandlerTest {
+
+    private final TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+    private final AtomicLong tick = new AtomicLong();
+    private final Clock clock = new Clock() {
+        @Override
+        public long getTick() {
+            return tick.get();
+        }
+
+        @Override
+        public long getTime() {
+            return TimeUnit.NANOSECONDS.toMillis(tick.get());
+        }
+    };
+    private final SlowestInvocationEventHandler handler =
+            new SlowestInvocationEventHandler(registry, "test", 3, 1, TimeUnit.SECONDS, clock);
+
+    @Test
+    public void testKeepsSlowestInvocationsOfCompletedInterval() throws Exception {
+        Method method = String.class.getMethod("length");
+        for (long millis : new long[] {5, 1, 9, 3, 7, 2}) {
+            invoke(method, new Object[0], millis);
+        }
+        assertThat(handler.getSlowestInvocations()).isEmpty();
+
+        tick.set(TimeUnit.SECONDS.toNanos(1));
+        List<SlowInvocation> slowest = handler.getSlowestInvocations().get("String.length");
+        assertThat(slowest).extracting(SlowInvocation::getDurationNanos).containsExactly(
+                TimeUnit.MILLISECONDS.toNanos(9),
+                TimeUnit.MILLISECONDS.toNanos(7),
+                TimeUnit.MILLISECONDS.toNanos(5));
+        assertThat(slowest.get(0).getThreadName()).isEqualTo(Thread.currentThread().getName());
+
+        Metric gauge = registry.getMetrics().get(MetricName.builder()
+                .safeName("test-slowest")
+                .putSafeTags("service-name", "String")
+                .putSafeTags("endpoint", "length")
+                .build());
+        assertThat(((Gauge<?>) gauge).getValue()).isEqualTo(slowest);
+
+        // the next interval's invocations replace the previous interval once it completes
+        invoke(method, new Object[0], 1);
+        assertThat(handler.getSlowestInvocations().get("String.length")).isEqualTo(slowest);
+        tick.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(handler.getSlowestInvocations().get("String.length"))
+                .extracting(SlowInvocation::getDurationNanos)
+                .containsExactly(TimeUnit.MILLISECONDS.toNanos(1));
+
+        tick.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(handler.getSlowestInvocations()).isEmpty();
+    }
+
+    @Test
+    public void testHandlersShareRegisteredInvocations() throws Exception {
+        SlowestInvocationEventHandler other =
+                new SlowestInvocationEventHandler(registry, "test", 3, 1, TimeUnit.SECONDS, clock);
+        Method method = String.class.getMethod("length");
+        invoke(method, new Object[0], 5);
+        invoke(other, method, new Object[0], 9);
+        tick.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(handler.getSlowestInvocations().get("String.length"))
+                .extracting(SlowInvocation::getDurationNanos)
+                .containsExactly(TimeUnit.MILLISECONDS.toNanos(9), TimeUnit.MILLISECONDS.toNanos(5));
+        assertThat(other.getSlowestInvocations()).isEqualTo(handler.getSlowestInvocations());
+    }
+
+    @Test
+    public void testDescribesArguments() throws Exception {
+        Method method = List.class.getMethod("addAll", int.class, java.util.Collection.class);
+        invoke(method, new Object[] {0, ImmutableList.of("a", "b")}, 1);
+        tick.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        SlowInvocation invocation = handler.getSlowestInvocations().get("List.addAll").get(0);
+        assertThat(invocation.getClassName()).isEqualTo("List");
+        assertThat(invocation.getMethodName()).isEqualTo("addAll");
+        assertThat(invocation.getArgumentTypes()).containsExactly("int", "Collection[2]");
+        assertThat(invocation.toString()).startsWith("List.addAll(int, Collection[2]) took 1.000ms");
+    }
+
+    @Test
+    public void testConcurrentInvocations() throws Exception {
+        Method method = String.class.getMethod("length");
+        List<Thread> threads = ImmutableList.of(1, 2, 3, 4).stream()
+                .map(t -> new Thread(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        InvocationContext context = handler.preInvocation("test", method, new Object[0]);
+                        handler.onSuccess(context, null);
+                    }
+                }))
+                .collect(Collectors.toList());
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        tick.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(handler.getSlowestInvocations().get("String.length")).hasSize(3);
+    }
+
+    private void invoke(Method method, Object[] args, long millis) {
+        invoke(handler, method, args, millis);
+    }
+
+    private void invoke(SlowestInvocationEventHandler target, Method method, Object[] args, long millis) {
+        InvocationContext context = target.preInvocation("test", method, args);
+        tick.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        target.onSuccess(context, null);
+        tick.addAndGet(-TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+}
@@ -18,18 +18,29 @@ package com.palantir.tritium.event.metrics;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Metric;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.palantir.tritium.event.AbstractInvocationEventHandler;
+import com.palantir.tritium.event.CompositeInvocationEventHandler;
 import com.palantir.tritium.event.DefaultInvocationContext;
+import com.palantir.tritium.event.FilteredInvocationEventHandler;
 import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.event.NoOpInvocationEventHandler;
 import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
 import com.palantir.tritium.metrics.registry.MetricName;
 import com.palantir.tritium.metrics.registry.SlidingWindowTaggedMetricRegistry;
 import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.lang.reflect.Method;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -44,6 +55,16 @@ public class TaggedMetricsServiceInvocationEventHandlerTest {
             return "bar";
         }
 
+        @SuppressWarnings("unused")
+        public CompletableFuture<String> doAsync() {
+            return new CompletableFuture<>();
+        }
+
+        @SuppressWarnings("unused")
+        public ListenableFuture<String> doListenable() {
+            return SettableFuture.create();
+        }
+
     }
 
     @Parameterized.Parameters
@@ -98,6 +119,192 @@ public class TaggedMetricsServiceInvocationEventHandlerTest {
         assertThat(metrics).containsKey(expectedMetricName);
     }
 
+    @Test
+    public void testRepeatedInvocations() throws Exception {
+        TaggedMetricRegistry registry = registrySupplier.get();
+        TaggedMetricsServiceInvocationEventHandler handler =
+                new TaggedMetricsServiceInvocationEventHandler(registry, "quux");
+        InvocationContext context = DefaultInvocationContext.of(
+                new TestImplementation(), TestImplementation.class.getMethod("doFoo"), null);
+
+        handler.onSuccess(context, "bar");
+        handler.onSuccess(context, "bar");
+        handler.onFailure(context, new IllegalStateException("first"));
+        handler.onFailure(context, new IllegalArgumentException("second"));
+        handler.onFailure(context, new IllegalArgumentException("third"));
+
+        MetricName timerName = MetricName.builder()
+                .safeName("quux")
+                .putSafeTags("service-name", "TestImplementation")
+                .putSafeTags("endpoint", "doFoo")
+                .build();
+        assertThat(registry.timer(timerName).getCount()).isEqualTo(2);
+        assertThat(registry.meter(failuresMetricName(IllegalStateException.class)).getCount()).isEqualTo(1);
+        assertThat(registry.meter(failuresMetricName(IllegalArgumentException.class)).getCount()).isEqualTo(2);
+        assertThat(registry.meter(MetricName.builder().safeName("failures").build()).getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testCompletionStageTimedOnCompletion() throws Exception {
+        TaggedMetricRegistry registry = registrySupplier.get();
+        TaggedMetricsServiceInvocationEventHandler handler =
+                new TaggedMetricsServiceInvocationEventHandler(registry, "quux");
+        CompletableFuture<String> succeeding = new CompletableFuture<>();
+        CompletableFuture<String> failing = new CompletableFuture<>();
+
+        handler.onSuccess(asyncContext("doAsync"), succeeding);
+        handler.onSuccess(asyncContext("doAsync"), failing.thenApply(String::trim));
+        assertThat(registry.timer(timerName("doAsync")).getCount()).isZero();
+
+        succeeding.complete("bar");
+        failing.completeExceptionally(new IllegalStateException("async"));
+        assertThat(registry.timer(timerName("doAsync")).getCount()).isEqualTo(1);
+        assertThat(registry.meter(failuresMetricName("doAsync", IllegalStateException.class)).getCount())
+                .isEqualTo(1);
+        assertThat(registry.meter(MetricName.builder().safeName("failures").build()).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testListenableFutureTimedOnCompletion() throws Exception {
+        TaggedMetricRegistry registry = registrySupplier.get();
+        TaggedMetricsServiceInvocationEventHandler handler =
+                new TaggedMetricsServiceInvocationEventHandler(registry, "quux");
+        SettableFuture<String> future = SettableFuture.create();
+
+        handler.onSuccess(asyncContext("doListenable"), future);
+        assertThat(registry.timer(timerName("doListenable")).getCount()).isZero();
+
+        future.set("bar");
+        assertThat(registry.timer(timerName("doListenable")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInFlightMetrics() throws Exception {
+        TaggedMetricRegistry registry = registrySupplier.get();
+        TaggedMetricsServiceInvocationEventHandler handler =
+                new TaggedMetricsServiceInvocationEventHandler(registry, "quux", true);
+        TestImplementation instance = new TestImplementation();
+        Method method = TestImplementation.class.getMethod("doAsync");
+
+        InvocationContext first = handler.preInvocation(instance, method, new Object[0]);
+        CompletableFuture<String> future = new CompletableFuture<>();
+        handler.onSuccess(first, future);
+        InvocationContext second = handler.preInvocation(instance, method, new Object[0]);
+        assertThat(registry.getMetrics().get(timerName("doAsync", "quux-in-flight")))
+                .isInstanceOf(Gauge.class)
+                .extracting(gauge -> ((Gauge<?>) gauge).getValue())
+                .isEqualTo(2L);
+
+        handler.onFailure(second, new IllegalStateException());
+        future.complete("bar");
+        assertThat(((Gauge<?>) registry.getMetrics().get(timerName("doAsync", "quux-in-flight"))).getValue())
+                .isEqualTo(0L);
+        assertThat(((Gauge<?>) registry.getMetrics().get(timerName("doAsync", "quux-in-flight-peak"))).getValue())
+                .isEqualTo(2L);
+        assertThat(registry.getMetrics()).containsKeys(
+                timerName("doAsync", "quux-arrival-rate"),
+                timerName("doAsync", "quux-concurrency"));
+    }
+
+    @Test
+    public void testInFlightMetricsSharedBetweenHandlers() throws Exception {
+        TaggedMetricRegistry registry = registrySupplier.get();
+        TaggedMetricsServiceInvocationEventHandler first =
+                new TaggedMetricsServiceInvocationEventHandler(registry, "quux", true);
+        TaggedMetricsServiceInvocationEventHandler second =
+                new TaggedMetricsServiceInvocationEventHandler(registry, "quux", true);
+        TestImplementation instance = new TestImplementation();
+        Method method = TestImplementation.class.getMethod("doFoo");
+
+        InvocationContext firstContext = first.preInvocation(instance, method, new Object[0]);
+        InvocationContext secondContext = second.preInvocation(instance, method, new Object[0]);
+        assertThat(((Gauge<?>) registry.getMetrics().get(timerName("doFoo", "quux-in-flight"))).getValue())
+                .isEqualTo(2L);
+
+        first.onSuccess(firstContext, "bar");
+        second.onSuccess(secondContext, "bar");
+        assertThat(((Gauge<?>) registry.getMetrics().get(timerName("doFoo", "quux-in-flight"))).getValue())
+                .isEqualTo(0L);
+    }
+
+    @Test
+    public void testInFlightBalancedWhenDisabledDuringInvocation() throws Exception {
+        TaggedMetricRegistry registry = registrySupplier.get();
+        ToggledInvocationEventHandler toggled = new ToggledInvocationEventHandler(
+                new TaggedMetricsServiceInvocationEventHandler(registry, "quux", true));
+        InvocationEventHandler<InvocationContext> handler = CompositeInvocationEventHandler.of(
+                ImmutableList.of(toggled, NoOpInvocationEventHandler.INSTANCE));
+        TestImplementation instance = new TestImplementation();
+        Method method = TestImplementation.class.getMethod("doFoo");
+
+        InvocationContext context = handler.preInvocation(instance, method, new Object[0]);
+        assertThat(((Gauge<?>) registry.getMetrics().get(timerName("doFoo", "quux-in-flight"))).getValue())
+                .isEqualTo(1L);
+
+        toggled.enabled = false;
+        handler.onSuccess(context, "bar");
+        assertThat(((Gauge<?>) registry.getMetrics().get(timerName("doFoo", "quux-in-flight"))).getValue())
+                .isEqualTo(0L);
+
+        // invocations started while disabled are not completed once enabled again
+        context = handler.preInvocation(instance, method, new Object[0]);
+        toggled.enabled = true;
+        handler.onFailure(context, new IllegalStateException());
+        assertThat(registry.getMetrics()).doesNotContainKey(failuresMetricName(IllegalStateException.class));
+        assertThat(((Gauge<?>) registry.getMetrics().get(timerName("doFoo", "quux-in-flight"))).getValue())
+                .isEqualTo(0L);
+    }
+
+    @Test
+    public void testInFlightBalancedWhenFiltered() throws Exception {
+        TaggedMetricRegistry registry = registrySupplier.get();
+        InvocationEventHandler<InvocationContext> handler = FilteredInvocationEventHandler.of(
+                new TaggedMetricsServiceInvocationEventHandler(registry, "quux", true),
+                (instance, method, args) -> "doFoo".equals(method.getName()));
+        TestImplementation instance = new TestImplementation();
+
+        InvocationContext filtered = handler.preInvocation(
+                instance, TestImplementation.class.getMethod("doListenable"), new Object[0]);
+        handler.onSuccess(filtered, SettableFuture.create());
+        InvocationContext context = handler.preInvocation(
+                instance, TestImplementation.class.getMethod("doFoo"), new Object[0]);
+        handler.onSuccess(context, "bar");
+
+        assertThat(registry.getMetrics()).doesNotContainKey(timerName("doListenable", "quux-in-flight"));
+        assertThat(((Gauge<?>) registry.getMetrics().get(timerName("doFoo", "quux-in-flight"))).getValue())
+                .isEqualTo(0L);
+    }
+
+    private static InvocationContext asyncContext(String methodName) throws NoSuchMethodException {
+        return DefaultInvocationContext.of(
+                new TestImplementation(), TestImplementation.class.getMethod(methodName), null);
+    }
+
+    private static MetricName timerName(String endpoint) {
+        return timerName(endpoint, "quux");
+    }
+
+    private static MetricName timerName(String endpoint, String name) {
+        return MetricName.builder()
+                .safeName(name)
+                .putSafeTags("service-name", "TestImplementation")
+                .putSafeTags("endpoint", endpoint)
+                .build();
+    }
+
+    private static MetricName failuresMetricName(Class<? extends Throwable> cause) {
+        return failuresMetricName("doFoo", cause);
+    }
+
+    private static MetricName failuresMetricName(String endpoint, Class<? extends Throwable> cause) {
+        return MetricName.builder()
+                .safeName("quux-failures")
+                .putSafeTags("service-name", "TestImplementation")
+                .putSafeTags("endpoint", endpoint)
+                .putSafeTags("cause", cause.getName())
+                .build();
+    }
+
     private static void invokeMethod(
             AbstractInvocationEventHandler handler, Object obj, String methodName, Object result, boolean success)
             throws Exception {
@@ -109,4 +316,37 @@ public class TaggedMetricsServiceInvocationEventHandlerTest {
             handler.onFailure(context, new RuntimeException("fail"));
         }
     }
+
+    /** Handler which can be disabled while invocations are in flight. */
+    private static final class ToggledInvocationEventHandler implements InvocationEventHandler<InvocationContext> {
+        private final InvocationEventHandler<InvocationContext> delegate;
+        private volatile boolean enabled = true;
+
+        ToggledInvocationEventHandler(InvocationEventHandler<InvocationContext> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public InvocationContext preInvocation(
+                @Nonnull Object instance,
+                @Nonnull Method method,
+                @Nonnull Object[] args) {
+            return delegate.preInvocation(instance, method, args);
+        }
+
+        @Override
+        public void onSuccess(@Nullable InvocationContext context, @Nullable Object result) {
+            delegate.onSuccess(context, result);
+        }
+
+        @Override
+        public void onFailure(@Nullable InvocationContext context, @Nonnull Throwable cause) {
+            delegate.onFailure(context, cause);
+        }
+    }
 }
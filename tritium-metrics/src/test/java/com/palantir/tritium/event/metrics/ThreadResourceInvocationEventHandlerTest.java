@@ -0,0 +1,86 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.event.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import com.palantir.tritium.event.InvocationContext;
+import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import org.junit.Test;
+
+public class ThreadResourceInvocationEventHandlerTest {
+
+    private final TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+
+    @Test
+    public void testRecordsCpuTimeAndAllocations() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean().isCurrentThreadCpuTimeSupported());
+        ThreadResourceInvocationEventHandler handler = new ThreadResourceInvocationEventHandler(registry, "test");
+        Method method = String.class.getMethod("length");
+
+        InvocationContext context = handler.preInvocation("test", method, new Object[0]);
+        byte[] allocated = new byte[1024 * 1024];
+        handler.onSuccess(context, allocated.length);
+
+        handler.onFailure(handler.preInvocation("test", method, new Object[0]), new RuntimeException());
+
+        assertThat(registry.histogram(metricName("test-cpu-time")).getCount()).isEqualTo(2);
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            assertThat(registry.histogram(metricName("test-allocated-bytes")).getCount()).isEqualTo(2);
+            assertThat(registry.histogram(metricName("test-allocated-bytes")).getSnapshot().getMax())
+                    .isGreaterThanOrEqualTo(allocated.length);
+        }
+    }
+
+    @Test
+    public void testIgnoresCompletionOnOtherThread() throws Exception {
+        ThreadResourceInvocationEventHandler handler = new ThreadResourceInvocationEventHandler(registry, "test");
+        InvocationContext context = handler.preInvocation("test", String.class.getMethod("length"), new Object[0]);
+
+        Thread thread = new Thread(() -> handler.onSuccess(context, 4));
+        thread.start();
+        thread.join();
+
+        assertThat(registry.getMetrics()).isEmpty();
+    }
+
+    @Test
+    public void testSampled() throws Exception {
+        InvocationEventHandler<InvocationContext> handler =
+                ThreadResourceInvocationEventHandler.sampled(registry, "test", 0.0);
+        Method method = String.class.getMethod("length");
+        for (int i = 0; i < 100; i++) {
+            handler.onSuccess(handler.preInvocation("test", method, new Object[0]), 4);
+        }
+        assertThat(registry.getMetrics()).isEmpty();
+    }
+
+    private static MetricName metricName(String name) {
+        return MetricName.builder()
+                .safeName(name)
+                .putSafeTags("service-name", "String")
+                .putSafeTags("endpoint", "length")
+                .build();
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricSet;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+public class MetricRegistryWithReservoirsIndexTest {
+
+    private final MetricRegistryWithReservoirs metrics =
+            new MetricRegistryWithReservoirs(ExponentiallyDecayingReservoir::new);
+
+    @Test
+    public void indexTracksRegistrations() {
+        Counter counter = metrics.counter("counter");
+        assertThat(metrics.getMetric("counter")).isSameAs(counter);
+
+        assertThat(metrics.remove("counter")).isTrue();
+        assertThat(metrics.getMetric("counter")).isNull();
+        assertThat(metrics.remove("counter")).isFalse();
+    }
+
+    @Test
+    public void indexTracksMetricSets() {
+        Counter counter = new Counter();
+        MetricSet metricSet = () -> ImmutableMap.<String, Metric>of("counter", counter);
+        metrics.register("set", metricSet);
+
+        assertThat(metrics.getMetric("set")).isNull();
+        assertThat(metrics.getMetric("set.counter")).isSameAs(counter);
+
+        metrics.removeMatching(MetricFilter.ALL);
+        assertThat(metrics.getMetric("set.counter")).isNull();
+        assertThat(metrics.getMetrics()).isEmpty();
+    }
+
+}
@@ -17,17 +17,26 @@
 package com.palantir.tritium.metrics;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
 import com.palantir.tritium.metrics.registry.MetricName;
 import com.palantir.tritium.metrics.registry.SlidingWindowTaggedMetricRegistry;
 import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import org.junit.Before;
@@ -104,6 +113,103 @@ public final class TaggedMetricsExecutorServiceTest {
         assertThat(registry.timer(QUEUED_DURATION).getCount()).isEqualTo(1);
     }
 
+    @Test
+    public void testSampledTiming() throws Exception {
+        ExecutorService sampled = MetricRegistries.instrument(
+                registry, Executors.newSingleThreadExecutor(), NAME, Integer.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            sampled.execute(() -> { });
+        }
+        sampled.shutdown();
+        assertThat(sampled.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(registry.meter(SUBMITTED).getCount()).isEqualTo(100);
+        assertThat(registry.counter(RUNNING).getCount()).isEqualTo(0);
+        assertThat(registry.meter(COMPLETED).getCount()).isEqualTo(100);
+        assertThat(registry.timer(DURATION).getCount()).isLessThan(100);
+        assertThat(registry.timer(QUEUED_DURATION).getCount()).isEqualTo(registry.timer(DURATION).getCount());
+    }
+
+    @Test
+    public void testSampledTimingRejectedForScheduledExecutor() {
+        ScheduledExecutorService scheduled = Executors.newSingleThreadScheduledExecutor();
+        try {
+            assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() ->
+                    MetricRegistries.instrument(registry, scheduled, NAME, 2));
+            assertThat(MetricRegistries.instrument(registry, scheduled, NAME, 1))
+                    .isInstanceOf(ScheduledExecutorService.class);
+        } finally {
+            scheduled.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testThreadPoolExecutorSaturation() throws Exception {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+        RejectedExecutionHandler handler = pool.getRejectedExecutionHandler();
+        ExecutorService instrumented = MetricRegistries.instrument(registry, pool, NAME);
+        assertThat(pool.getRejectedExecutionHandler()).isSameAs(handler);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch finishLatch = new CountDownLatch(1);
+        instrumented.execute(() -> {
+            startLatch.countDown();
+            Uninterruptibles.awaitUninterruptibly(finishLatch);
+        });
+        startLatch.await();
+        instrumented.execute(() -> { });
+        assertThatExceptionOfType(RejectedExecutionException.class)
+                .isThrownBy(() -> instrumented.execute(() -> { }));
+
+        assertThat(gaugeValue("queued")).isEqualTo(1);
+        assertThat(gaugeValue("queue.remaining-capacity")).isEqualTo(0);
+        assertThat(gaugeValue("active")).isEqualTo(1);
+        assertThat(gaugeValue("pool.size")).isEqualTo(1);
+        assertThat(gaugeValue("pool.max-size")).isEqualTo(1);
+        assertThat(registry.meter(metricName("rejected")).getCount()).isEqualTo(1);
+
+        finishLatch.countDown();
+        instrumented.shutdown();
+        assertThat(instrumented.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(gaugeValue("queued")).isEqualTo(0);
+    }
+
+    @Test
+    public void testRejectedAfterShutdown() {
+        ExecutorService instrumented = MetricRegistries.instrument(registry, new ForkJoinPool(1), NAME);
+        instrumented.shutdown();
+        assertThatExceptionOfType(RejectedExecutionException.class)
+                .isThrownBy(() -> instrumented.submit(() -> { }));
+
+        ScheduledExecutorService scheduled = MetricRegistries.instrument(
+                registry, Executors.newSingleThreadScheduledExecutor(), NAME);
+        scheduled.shutdown();
+        assertThatExceptionOfType(RejectedExecutionException.class)
+                .isThrownBy(() -> scheduled.schedule(() -> { }, 1, TimeUnit.SECONDS));
+
+        assertThat(registry.meter(metricName("rejected")).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testForkJoinPoolSaturation() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            MetricRegistries.instrument(registry, pool, NAME).submit(() -> "done").get();
+            assertThat(gaugeValue("parallelism")).isEqualTo(3);
+            assertThat(registry.getMetrics()).containsKeys(
+                    metricName("steals"),
+                    metricName("queued"),
+                    metricName("queued-submissions"),
+                    metricName("active"),
+                    metricName("pool.size"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Object gaugeValue(String metricName) {
+        return ((Gauge<?>) registry.getMetrics().get(metricName(metricName))).getValue();
+    }
+
     private static MetricName metricName(String metricName) {
         return MetricName.builder()
                 .safeName(MetricRegistry.name("executor", metricName))
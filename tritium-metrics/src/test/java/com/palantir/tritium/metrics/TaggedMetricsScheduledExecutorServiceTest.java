@@ -17,9 +17,13 @@
 package com.palantir.tritium.metrics;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
 import com.palantir.tritium.metrics.registry.MetricName;
 import com.palantir.tritium.metrics.registry.SlidingWindowTaggedMetricRegistry;
@@ -27,10 +31,12 @@ import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import org.awaitility.Duration;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -50,6 +56,8 @@ public final class TaggedMetricsScheduledExecutorServiceTest {
     private static final MetricName SCHEDULED_REPETITIVELY = metricName("scheduled.repetitively");
     private static final MetricName SCHEDULED_OVERRAN = metricName("scheduled.overrun");
     private static final MetricName SCHEDULED_PERCENT_OF_PERIOD = metricName("scheduled.percent-of-period");
+    private static final MetricName SCHEDULED_LAG = metricName("scheduled.lag");
+    private static final MetricName SCHEDULED_MAX_LAG = metricName("scheduled.max-lag");
 
     @Parameterized.Parameters
     public static Iterable<Supplier<Object>> data() {
@@ -159,6 +167,74 @@ public final class TaggedMetricsScheduledExecutorServiceTest {
         assertThat(registry.histogram(SCHEDULED_PERCENT_OF_PERIOD).getCount()).isEqualTo(2);
     }
 
+    @Test
+    public void testScheduledLagMetrics() throws Exception {
+        assertThat(registry.getMetrics()).containsKeys(SCHEDULED_LAG, SCHEDULED_MAX_LAG);
+        assertThat(maxLagNanos()).isEqualTo(0);
+
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch finishLatch = new CountDownLatch(1);
+        executorService.execute(() -> {
+            startLatch.countDown();
+            Uninterruptibles.awaitUninterruptibly(finishLatch);
+        });
+        startLatch.await();
+
+        // the only thread is busy, so the scheduled tasks start late
+        Future<?> once = executorService.schedule(() -> { }, 1L, TimeUnit.MILLISECONDS);
+        Future<?> repeated = executorService.scheduleWithFixedDelay(() -> { }, 1L, 1L, TimeUnit.DAYS);
+        await().atMost(Duration.FIVE_SECONDS).until(() -> maxLagNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+
+        finishLatch.countDown();
+        once.get(10, TimeUnit.SECONDS);
+        await().atMost(Duration.FIVE_SECONDS).until(() -> registry.histogram(SCHEDULED_LAG).getCount() >= 2);
+        assertThat(registry.histogram(SCHEDULED_LAG).getSnapshot().getMax())
+                .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+        // the fixed delay task is not due for another day
+        assertThat(maxLagNanos()).isEqualTo(0);
+
+        repeated.cancel(false);
+        assertThat(maxLagNanos()).isEqualTo(0);
+    }
+
+    @Test
+    public void testCancelledTasksNotTracked() {
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(executorService.schedule(() -> { }, 1L, TimeUnit.DAYS).cancel(false)).isTrue();
+        }
+        assertThat(((TaggedMetricsScheduledExecutorService) executorService).pendingLagCount()).isZero();
+    }
+
+    @Test
+    public void testCompletedTasksNotTracked() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            executorService.schedule(() -> { }, 0L, TimeUnit.MILLISECONDS).get(10, TimeUnit.SECONDS);
+        }
+        assertThat(((TaggedMetricsScheduledExecutorService) executorService).pendingLagCount()).isZero();
+    }
+
+    @Test
+    public void testLongDelayHasNoLag() {
+        Future<?> future = executorService.schedule(() -> { }, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        assertThat(maxLagNanos()).isEqualTo(0);
+        future.cancel(false);
+    }
+
+    @Test
+    public void testRejectedTaskNotTracked() throws Exception {
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> executorService.schedule(() -> { }, 1L, TimeUnit.MILLISECONDS))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(maxLagNanos()).isEqualTo(0);
+        assertThat(((TaggedMetricsScheduledExecutorService) executorService).pendingLagCount()).isZero();
+    }
+
+    private long maxLagNanos() {
+        return (Long) ((Gauge<?>) registry.getMetrics().get(SCHEDULED_MAX_LAG)).getValue();
+    }
+
     private static MetricName metricName(String metricName) {
         return MetricName.builder()
                 .safeName(MetricRegistry.name("executor", metricName))
@@ -0,0 +1,137 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.junit.After;
+import org.junit.Test;
+
+public final class TaggedMetricsVirtualThreadExecutorServiceTest {
+
+    private static final String NAME = "name";
+
+    private final TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+    // closes of the fake event stream, as flight recorder streaming is not available on the JDKs this project uses
+    private final AtomicInteger streamCloses = new AtomicInteger();
+    @Nullable
+    private ExecutorService executorService;
+
+    @After
+    public void after() throws InterruptedException {
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        VirtualThreadEvents.acquire(() -> streamCloses::incrementAndGet);
+        try {
+            checkMetrics(instrument());
+        } finally {
+            VirtualThreadEvents.release();
+        }
+    }
+
+    @Test
+    public void testNotTrackedWithoutStream() throws Exception {
+        VirtualThreadEvents.acquire(() -> null);
+        try {
+            Future<Boolean> tracked = instrument().submit(() ->
+                    VirtualThreadEvents.isRunning(Thread.currentThread().getId()));
+            assertThat(tracked.get()).isFalse();
+        } finally {
+            VirtualThreadEvents.release();
+        }
+    }
+
+    @Test
+    public void testStreamClosedOnceAllExecutorsShutDown() throws Exception {
+        VirtualThreadEvents.acquire(() -> streamCloses::incrementAndGet);
+        try {
+            ExecutorService executor = instrument();
+            executor.shutdown();
+            executor.shutdownNow();
+            assertThat(streamCloses).hasValue(0);
+        } finally {
+            VirtualThreadEvents.release();
+        }
+        assertThat(streamCloses).hasValue(1);
+    }
+
+    // virtual threads are not available on the JDKs this project builds with, one thread per task is equivalent
+    private ExecutorService instrument() {
+        ExecutorService executor =
+                MetricRegistries.instrumentVirtualThreads(registry, Executors.newCachedThreadPool(), NAME);
+        executorService = executor;
+        return executor;
+    }
+
+    private void checkMetrics(ExecutorService executor) throws Exception {
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch finishLatch = new CountDownLatch(1);
+        Future<Long> future = executor.submit(() -> {
+            startLatch.countDown();
+            finishLatch.await();
+            return Thread.currentThread().getId();
+        });
+        startLatch.await();
+
+        assertThat(registry.meter(metricName("started")).getCount()).isEqualTo(1);
+        assertThat(registry.counter(metricName("live")).getCount()).isEqualTo(1);
+        assertThat(registry.meter(metricName("completed")).getCount()).isEqualTo(0);
+
+        finishLatch.countDown();
+        long threadId = future.get();
+        assertThat(VirtualThreadEvents.isRunning(threadId)).isFalse();
+
+        assertThat(registry.counter(metricName("live")).getCount()).isEqualTo(0);
+        assertThat(registry.meter(metricName("completed")).getCount()).isEqualTo(1);
+        assertThat(registry.timer(metricName("duration")).getCount()).isEqualTo(1);
+
+        // events are delivered after the task has finished, and attributed by the thread it ran on
+        VirtualThreadEvents.pinned(threadId, Duration.ofMillis(25));
+        VirtualThreadEvents.submitFailed(threadId);
+        VirtualThreadEvents.pinned(-1, Duration.ofMillis(25));
+
+        assertThat(registry.timer(metricName("pinned")).getCount()).isEqualTo(1);
+        assertThat(registry.timer(metricName("pinned")).getSnapshot().getMax())
+                .isBetween(TimeUnit.MILLISECONDS.toNanos(24), TimeUnit.MILLISECONDS.toNanos(26));
+        assertThat(registry.meter(metricName("submit-failed")).getCount()).isEqualTo(1);
+    }
+
+    private static MetricName metricName(String metricName) {
+        return MetricName.builder()
+                .safeName(MetricRegistry.name("executor", metricName))
+                .putSafeTags("executor", NAME)
+                .build();
+    }
+}
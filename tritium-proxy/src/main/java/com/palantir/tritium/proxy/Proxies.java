@@ -16,7 +16,10 @@
 
 package com.palantir.tritium.proxy;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import java.util.Collection;
@@ -28,6 +31,11 @@ import java.util.Set;
 @SuppressWarnings("PreferSafeLoggingPreconditions") // this module depends only on JDK
 public final class Proxies {
 
+    private static final ProxyTypeCache<Class<?>[]> cachedInterfaces =
+            new ProxyTypeCache<>((iface, delegateClass) -> interfaces(iface, delegateClass, Collections.emptySet()));
+    private static final ProxyTypeCache<Constructor<?>> proxyConstructors =
+            new ProxyTypeCache<>(Proxies::proxyConstructor);
+
     private Proxies() {
         throw new UnsupportedOperationException();
     }
@@ -47,10 +55,33 @@ public final class Proxies {
         Objects.requireNonNull(handler, "handler");
         checkIsInterface(iface);
 
-        return iface.cast(Proxy.newProxyInstance(
-                delegate.getClass().getClassLoader(),
-                Proxies.interfaces(iface, delegate.getClass()),
-                handler));
+        Constructor<?> constructor = proxyConstructors.get(iface, delegate.getClass());
+        try {
+            return iface.cast(constructor.newInstance(handler));
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Failed to create proxy for " + iface, e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create proxy for " + iface, e);
+        }
+    }
+
+    /**
+     * Looks up the {@link Proxy} class constructor for the specified types once, rather than on every
+     * {@link Proxy#newProxyInstance} call.
+     */
+    @SuppressWarnings("deprecation") // Proxy.getProxyClass is deprecated on Java 9+ in favor of newProxyInstance
+    private static Constructor<?> proxyConstructor(Class<?> iface, Class<?> delegateClass) {
+        Class<?> proxyClass = Proxy.getProxyClass(delegateClass.getClassLoader(), interfaces(iface, delegateClass));
+        try {
+            Constructor<?> constructor = proxyClass.getConstructor(InvocationHandler.class);
+            if (!Modifier.isPublic(proxyClass.getModifiers())) {
+                // proxy classes implementing non-public interfaces are package-private
+                constructor.setAccessible(true);
+            }
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Proxy class has no invocation handler constructor: " + proxyClass, e);
+        }
     }
 
     /**
@@ -82,7 +113,8 @@ public final class Proxies {
     }
 
     /**
-     * Determine the superset of interfaces for the specified arguments.
+     * Determine the superset of interfaces for the specified arguments. The result is cached per interface and
+     * delegate class, and must not be modified.
      *
      * @param iface primary interface class
      * @param delegateClass delegate class
@@ -90,7 +122,8 @@ public final class Proxies {
      * @throws IllegalArgumentException if the specified interface class is not an interface
      */
     static Class<?>[] interfaces(Class<?> iface, Class<?> delegateClass) {
-        return interfaces(iface, delegateClass, Collections.emptySet());
+        checkIsInterface(iface);
+        return cachedInterfaces.get(iface, Objects.requireNonNull(delegateClass, "delegateClass"));
     }
 
     static void checkIsInterface(Class<?> iface) {
@@ -0,0 +1,61 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.proxy;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Caches values computed for a proxied interface and delegate class pair. Values are held by the delegate class through
+ * a {@link ClassValue}, so they do not keep the delegate class or its class loader reachable.
+ *
+ * @param <V> cached value type
+ */
+final class ProxyTypeCache<V> {
+
+    private final ClassValue<ConcurrentMap<Class<?>, V>> valuesByDelegateClass =
+            new ClassValue<ConcurrentMap<Class<?>, V>>() {
+                @Override
+                protected ConcurrentMap<Class<?>, V> computeValue(Class<?> delegateClass) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+    private final BiFunction<Class<?>, Class<?>, V> loader;
+
+    ProxyTypeCache(BiFunction<Class<?>, Class<?>, V> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the value for the specified interface and delegate class, computing it if necessary. Values are not
+     * cached if computing them throws.
+     */
+    V get(Class<?> iface, Class<?> delegateClass) {
+        ConcurrentMap<Class<?>, V> values = valuesByDelegateClass.get(delegateClass);
+        V value = values.get(iface);
+        if (value == null) {
+            value = loader.apply(iface, delegateClass);
+            V existing = values.putIfAbsent(iface, value);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return value;
+    }
+
+}
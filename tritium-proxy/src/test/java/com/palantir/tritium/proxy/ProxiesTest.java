@@ -41,6 +41,31 @@ public class ProxiesTest {
         assertEquals("hello, world", proxy.test());
     }
 
+    @Test
+    public void testNewProxyReusesProxyClass() {
+        TestInterface implementation = new TestImplementation();
+        TestInterface first = Proxies.newProxy(TestInterface.class, implementation,
+                (delegate, method, args) -> method.invoke(implementation, args));
+        TestInterface second = Proxies.newProxy(TestInterface.class, implementation,
+                (delegate, method, args) -> method.invoke(implementation, args));
+        assertThat(first).isNotSameAs(second);
+        assertThat(first.getClass()).isSameAs(second.getClass());
+        assertThat(second.test()).isEqualTo("hello");
+    }
+
+    @Test
+    public void testNewProxyNonPublicInterface() {
+        PackagePrivateInterface proxy = Proxies.newProxy(PackagePrivateInterface.class, () -> "delegate",
+                (delegate, method, args) -> "proxied");
+        assertThat(proxy.get()).isEqualTo("proxied");
+    }
+
+    @Test
+    public void testInterfacesCached() {
+        assertThat(Proxies.interfaces(TestInterface.class, TestImplementation.class))
+                .isSameAs(Proxies.interfaces(TestInterface.class, TestImplementation.class));
+    }
+
     @Test
     public void testInterfacesAdditionalInterfaces() {
         Class<?>[] interfaces = Proxies.interfaces(TestInterface.class, Runnable.class, ImmutableList.of(List.class));
@@ -93,4 +118,8 @@ public class ProxiesTest {
                 .hasRootCauseExactlyInstanceOf(UnsupportedOperationException.class);
     }
 
+    interface PackagePrivateInterface {
+        String get();
+    }
+
 }
@@ -32,13 +32,14 @@ import com.palantir.logsafe.exceptions.SafeIllegalArgumentException;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 import javax.annotation.Nonnull;
 
 public abstract class AbstractTaggedMetricRegistry implements TaggedMetricRegistry {
 
     private final Map<MetricName, Metric> registry = new ConcurrentHashMap<>();
-    private final Map<Map.Entry<String, String>, TaggedMetricSet> taggedRegistries = new ConcurrentHashMap<>();
+    private final Map<Map.Entry<String, String>, TaggedMetrics> taggedRegistries = new ConcurrentHashMap<>();
     private final Supplier<Reservoir> reservoirSupplier;
 
     public AbstractTaggedMetricRegistry(Supplier<Reservoir> reservoirSupplier) {
@@ -66,23 +67,23 @@ public abstract class AbstractTaggedMetricRegistry implements TaggedMetricRegist
     }
 
     /**
-     * Supplies meter instances for this registry.
+     * Supplies meter instances for this registry, by default {@link StripedMeter}.
      *
      * @return meter supplier
      */
     @Nonnull
     protected Supplier<Meter> meterSupplier() {
-        return Meter::new;
+        return StripedMeter::new;
     }
 
     /**
-     * Supplies timer instances for this registry.
+     * Supplies timer instances for this registry, by default {@link StripedTimer}.
      *
      * @return timer supplier
      */
     @Nonnull
     protected Supplier<Timer> timerSupplier() {
-        return () -> new Timer(createReservoir());
+        return () -> new StripedTimer(createReservoir());
     }
 
     /**
@@ -143,19 +144,22 @@ public abstract class AbstractTaggedMetricRegistry implements TaggedMetricRegist
 
     @Override
     public final Map<MetricName, Metric> getMetrics() {
-        ImmutableMap.Builder<MetricName, Metric> result = ImmutableMap.<MetricName, Metric>builder()
-                .putAll(registry);
-        taggedRegistries.forEach((tag, metrics) -> metrics.getMetrics()
-                .forEach((metricName, metric) -> result.put(
-                        MetricName.builder()
-                                .from(metricName)
-                                .putSafeTags(tag.getKey(), tag.getValue())
-                                .build(),
-                        metric)));
-
+        ImmutableMap.Builder<MetricName, Metric> result = ImmutableMap.builder();
+        forEachMetric(result::put);
         return result.build();
     }
 
+    /**
+     * Visits the metrics of this registry and of each tagged metric set without copying them. Names of metrics in
+     * tagged metric sets are cached, so repeated iterations do not rebuild them.
+     */
+    @Override
+    public final void forEachMetric(BiConsumer<MetricName, Metric> consumer) {
+        checkNotNull(consumer, "consumer");
+        registry.forEach(consumer);
+        taggedRegistries.values().forEach(metrics -> metrics.forEachMetric(consumer));
+    }
+
     @Override
     public final Optional<Metric> remove(MetricName metricName) {
         return Optional.ofNullable(registry.remove(metricName));
@@ -163,18 +167,25 @@ public abstract class AbstractTaggedMetricRegistry implements TaggedMetricRegist
 
     @Override
     public final void addMetrics(String safeTagName, String safeTagValue, TaggedMetricSet other) {
-        taggedRegistries.put(Maps.immutableEntry(safeTagName, safeTagValue), other);
+        taggedRegistries.put(
+                Maps.immutableEntry(safeTagName, safeTagValue),
+                new TaggedMetrics(safeTagName, safeTagValue, checkNotNull(other, "metrics")));
     }
 
     @Override
     public final Optional<TaggedMetricSet> removeMetrics(String safeTagName, String safeTagValue) {
-        return Optional.ofNullable(taggedRegistries.remove(Maps.immutableEntry(safeTagName, safeTagValue)));
+        return Optional.ofNullable(taggedRegistries.remove(Maps.immutableEntry(safeTagName, safeTagValue)))
+                .map(TaggedMetrics::metrics);
     }
 
     @Override
     public final boolean removeMetrics(
             String safeTagName, String safeTagValue, TaggedMetricSet metrics) {
-        return taggedRegistries.remove(Maps.immutableEntry(safeTagName, safeTagValue), metrics);
+        Map.Entry<String, String> tag = Maps.immutableEntry(safeTagName, safeTagValue);
+        TaggedMetrics existing = taggedRegistries.get(tag);
+        return existing != null
+                && existing.metrics().equals(metrics)
+                && taggedRegistries.remove(tag, existing);
     }
 
     protected final <T extends Metric> T getOrAdd(
@@ -192,4 +203,46 @@ public abstract class AbstractTaggedMetricRegistry implements TaggedMetricRegist
         }
         return metricClass.cast(metric);
     }
+
+    /** A metric set added with {@link #addMetrics} and the tagged names of its metrics. */
+    private static final class TaggedMetrics {
+        private final String safeTagName;
+        private final String safeTagValue;
+        private final TaggedMetricSet metrics;
+        private final Map<MetricName, MetricName> taggedNames = new ConcurrentHashMap<>();
+
+        TaggedMetrics(String safeTagName, String safeTagValue, TaggedMetricSet metrics) {
+            this.safeTagName = safeTagName;
+            this.safeTagValue = safeTagValue;
+            this.metrics = metrics;
+        }
+
+        TaggedMetricSet metrics() {
+            return metrics;
+        }
+
+        void forEachMetric(BiConsumer<MetricName, Metric> consumer) {
+            int[] visited = new int[1];
+            metrics.forEachMetric((metricName, metric) -> {
+                visited[0]++;
+                consumer.accept(taggedName(metricName), metric);
+            });
+            // names of metrics removed from the set are only dropped once they dominate the cache
+            if (taggedNames.size() > 2 * visited[0]) {
+                taggedNames.clear();
+            }
+        }
+
+        private MetricName taggedName(MetricName metricName) {
+            MetricName taggedName = taggedNames.get(metricName);
+            if (taggedName == null) {
+                taggedName = MetricName.builder()
+                        .from(metricName)
+                        .putSafeTags(safeTagName, safeTagValue)
+                        .build();
+                taggedNames.put(metricName, taggedName);
+            }
+            return taggedName;
+        }
+    }
 }
@@ -0,0 +1,32 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.metrics.registry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TaggedMetricRegistry} whose histograms and timers reflect a sliding time window like
+ * {@link SlidingWindowTaggedMetricRegistry}, using {@link SlidingWindowHdrHistogramReservoir} so that memory use does
+ * not grow with the update rate.
+ */
+public final class HdrSlidingWindowTaggedMetricRegistry extends AbstractTaggedMetricRegistry {
+
+    public HdrSlidingWindowTaggedMetricRegistry(int window, TimeUnit windowUnit) {
+        super(() -> new SlidingWindowHdrHistogramReservoir(window, windowUnit));
+    }
+
+}
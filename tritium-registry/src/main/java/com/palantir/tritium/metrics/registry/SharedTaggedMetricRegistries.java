@@ -29,7 +29,8 @@ public final class SharedTaggedMetricRegistries {
      *
      * Increasing the window size would also increase the memory footprint. SlidingTimeWindowArrayReservoir takes
      * ~128 bits per stored measurement, 10K measurements / sec with reservoir storing time of 35s is:
-     * 10_000 * 35 * 128 / 8 = 5600000 bytes ~ 5 megabytes.
+     * 10_000 * 35 * 128 / 8 = 5600000 bytes ~ 5 megabytes. Registries that need a bounded footprint regardless of
+     * the update rate can use {@link HdrSlidingWindowTaggedMetricRegistry} instead.
      */
     private static final TaggedMetricRegistry DEFAULT = new SlidingWindowTaggedMetricRegistry(35, TimeUnit.SECONDS);
 
@@ -0,0 +1,132 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.metrics.registry;
+
+import static com.palantir.logsafe.Preconditions.checkArgument;
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * {@link Reservoir} which keeps measurements from a sliding time window in a fixed ring of HdrHistogram buckets.
+ * <p>
+ * Unlike {@link com.codahale.metrics.SlidingTimeWindowArrayReservoir}, which stores every measurement taken during
+ * the window, memory use depends only on the number of buckets and the range of recorded values, not on the update
+ * rate. Updates record into the current bucket's {@link Recorder} without locking; the bucket is only locked once per
+ * bucket interval, when it is reused for a new interval.
+ * <p>
+ * A snapshot covers the current, partially elapsed, bucket and the preceding {@code buckets} buckets, so it reflects
+ * at least the configured window and at most one bucket interval more. Values are recorded with two significant
+ * digits of precision, and negative values are recorded as zero.
+ */
+public final class SlidingWindowHdrHistogramReservoir implements Reservoir {
+
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final int DEFAULT_BUCKETS = 10;
+
+    private final Bucket[] ring;
+    private final long bucketNanos;
+    private final Clock clock;
+
+    public SlidingWindowHdrHistogramReservoir(long window, TimeUnit windowUnit) {
+        this(window, windowUnit, DEFAULT_BUCKETS, Clock.defaultClock());
+    }
+
+    public SlidingWindowHdrHistogramReservoir(long window, TimeUnit windowUnit, int buckets, Clock clock) {
+        checkNotNull(windowUnit, "windowUnit");
+        checkArgument(buckets > 0, "buckets must be positive");
+        long windowNanos = windowUnit.toNanos(window);
+        checkArgument(windowNanos >= buckets, "window must be at least one nanosecond per bucket");
+        this.bucketNanos = windowNanos / buckets;
+        this.clock = checkNotNull(clock, "clock");
+        this.ring = new Bucket[buckets + 1];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Bucket();
+        }
+    }
+
+    @Override
+    public int size() {
+        return getSnapshot().size();
+    }
+
+    @Override
+    public void update(long value) {
+        long epoch = currentEpoch();
+        ring[index(epoch)].record(Math.max(0, value), epoch);
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        long epoch = currentEpoch();
+        long oldestEpoch = epoch - ring.length + 1;
+        Histogram histogram = new Histogram(SIGNIFICANT_DIGITS);
+        for (Bucket bucket : ring) {
+            bucket.addTo(histogram, oldestEpoch, epoch);
+        }
+        return new HdrHistogramSnapshot(histogram);
+    }
+
+    private long currentEpoch() {
+        return Math.floorDiv(clock.getTick(), bucketNanos);
+    }
+
+    private int index(long epoch) {
+        return (int) Math.floorMod(epoch, (long) ring.length);
+    }
+
+    private static final class Bucket {
+        private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        private volatile long epoch = Long.MIN_VALUE;
+
+        // guarded by this
+        private final Histogram accumulated = new Histogram(SIGNIFICANT_DIGITS);
+        @Nullable
+        private Histogram interval;
+
+        void record(long value, long currentEpoch) {
+            if (epoch != currentEpoch) {
+                advance(currentEpoch);
+            }
+            recorder.recordValue(value);
+        }
+
+        private synchronized void advance(long newEpoch) {
+            // a writer that read the clock before the bucket was reused must not reset it back to a stale epoch
+            if (newEpoch > epoch) {
+                recorder.reset();
+                accumulated.reset();
+                epoch = newEpoch;
+            }
+        }
+
+        synchronized void addTo(Histogram target, long oldestEpoch, long newestEpoch) {
+            if (epoch >= oldestEpoch && epoch <= newestEpoch) {
+                interval = recorder.getIntervalHistogram(interval);
+                accumulated.add(interval);
+                target.add(accumulated);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.metrics.registry;
+
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.EWMA;
+import com.codahale.metrics.Meter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Meter} whose {@link #mark} only increments a single {@link LongAdder}, which stripes updates across cells
+ * under contention.
+ * <p>
+ * Unlike {@link Meter}, which updates three moving averages and checks whether they need to be ticked on every mark,
+ * the moving averages are brought up to date lazily when a rate is read, typically by a reporter. Events marked since
+ * the previous read are spread evenly across the five second intervals which elapsed in between, so a steady rate of
+ * events is reported accurately regardless of how often rates are read, while bursts are smoothed over the interval
+ * between reads.
+ */
+public final class StripedMeter extends Meter {
+
+    private static final long TICK_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    private final LongAdder count = new LongAdder();
+    private final EWMA m1Rate = EWMA.oneMinuteEWMA();
+    private final EWMA m5Rate = EWMA.fiveMinuteEWMA();
+    private final EWMA m15Rate = EWMA.fifteenMinuteEWMA();
+    private final Clock clock;
+    private final long startTime;
+
+    // guarded by this
+    private long lastTick;
+    private long lastTickCount;
+
+    public StripedMeter() {
+        this(Clock.defaultClock());
+    }
+
+    public StripedMeter(Clock clock) {
+        super(clock);
+        this.clock = checkNotNull(clock, "clock");
+        this.startTime = clock.getTick();
+        this.lastTick = startTime;
+    }
+
+    @Override
+    public void mark() {
+        count.increment();
+    }
+
+    @Override
+    public void mark(long events) {
+        count.add(events);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanRate() {
+        long currentCount = getCount();
+        if (currentCount == 0) {
+            return 0.0;
+        }
+        double elapsed = clock.getTick() - startTime;
+        return currentCount / elapsed * TimeUnit.SECONDS.toNanos(1);
+    }
+
+    @Override
+    public double getOneMinuteRate() {
+        tickIfNecessary();
+        return m1Rate.getRate(TimeUnit.SECONDS);
+    }
+
+    @Override
+    public double getFiveMinuteRate() {
+        tickIfNecessary();
+        return m5Rate.getRate(TimeUnit.SECONDS);
+    }
+
+    @Override
+    public double getFifteenMinuteRate() {
+        tickIfNecessary();
+        return m15Rate.getRate(TimeUnit.SECONDS);
+    }
+
+    private synchronized void tickIfNecessary() {
+        long age = clock.getTick() - lastTick;
+        if (age > TICK_INTERVAL) {
+            long requiredTicks = age / TICK_INTERVAL;
+            lastTick += requiredTicks * TICK_INTERVAL;
+
+            long currentCount = count.sum();
+            long uncounted = currentCount - lastTickCount;
+            lastTickCount = currentCount;
+            long perTick = uncounted / requiredTicks;
+            long remainder = uncounted % requiredTicks;
+
+            for (long i = 0; i < requiredTicks; i++) {
+                long events = (i < remainder) ? perTick + 1 : perTick;
+                m1Rate.update(events);
+                m5Rate.update(events);
+                m15Rate.update(events);
+                m1Rate.tick();
+                m5Rate.tick();
+                m15Rate.tick();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StripedMeter{count=" + getCount() + '}';
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.metrics.registry;
+
+import static com.palantir.logsafe.Preconditions.checkNotNull;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformSnapshot;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Timer} which records rates with a {@link StripedMeter}, so that concurrent updates only contend on the
+ * supplied {@link Reservoir}.
+ * <p>
+ * Every public {@link Timer} method which records or reads a value is overridden, and {@link Timer#time()} records
+ * through {@link #update(long, TimeUnit)}, so the meter and histogram built by the {@link Timer} constructor are never
+ * used. The superclass is given an empty reservoir so that its histogram does not share the supplied one.
+ */
+public final class StripedTimer extends Timer {
+
+    private final StripedMeter meter;
+    private final Histogram histogram;
+    private final Clock clock;
+
+    public StripedTimer(Reservoir reservoir) {
+        this(reservoir, Clock.defaultClock());
+    }
+
+    public StripedTimer(Reservoir reservoir, Clock clock) {
+        super(UnusedReservoir.INSTANCE, clock);
+        this.clock = checkNotNull(clock, "clock");
+        this.meter = new StripedMeter(clock);
+        this.histogram = new Histogram(checkNotNull(reservoir, "reservoir"));
+    }
+
+    @Override
+    public void update(long duration, TimeUnit unit) {
+        update(unit.toNanos(duration));
+    }
+
+    private void update(long durationNanos) {
+        if (durationNanos >= 0) {
+            histogram.update(durationNanos);
+            meter.mark();
+        }
+    }
+
+    @Override
+    public <T> T time(Callable<T> event) throws Exception {
+        long startTime = clock.getTick();
+        try {
+            return event.call();
+        } finally {
+            update(clock.getTick() - startTime);
+        }
+    }
+
+    @Override
+    public void time(Runnable event) {
+        long startTime = clock.getTick();
+        try {
+            event.run();
+        } finally {
+            update(clock.getTick() - startTime);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    @Override
+    public double getFifteenMinuteRate() {
+        return meter.getFifteenMinuteRate();
+    }
+
+    @Override
+    public double getFiveMinuteRate() {
+        return meter.getFiveMinuteRate();
+    }
+
+    @Override
+    public double getMeanRate() {
+        return meter.getMeanRate();
+    }
+
+    @Override
+    public double getOneMinuteRate() {
+        return meter.getOneMinuteRate();
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        return histogram.getSnapshot();
+    }
+
+    @Override
+    public String toString() {
+        return "StripedTimer{count=" + getCount() + '}';
+    }
+
+    /** Reservoir of the superclass's unused histogram. */
+    private enum UnusedReservoir implements Reservoir {
+        INSTANCE;
+
+        private static final Snapshot EMPTY = new UniformSnapshot(new long[0]);
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public void update(long value) {}
+
+        @Override
+        public Snapshot getSnapshot() {
+            return EMPTY;
+        }
+    }
+
+}
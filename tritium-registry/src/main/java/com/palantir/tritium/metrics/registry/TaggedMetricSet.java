@@ -18,6 +18,7 @@ package com.palantir.tritium.metrics.registry;
 
 import com.codahale.metrics.Metric;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 public interface TaggedMetricSet {
     /**
@@ -26,4 +27,14 @@ public interface TaggedMetricSet {
      * @return map of metrics
      */
     Map<MetricName, Metric> getMetrics();
+
+    /**
+     * Performs the given action for each metric in this set. Implementations may visit metrics without building the
+     * map returned by {@link #getMetrics()}, so this is preferred by reporters that read metrics periodically.
+     *
+     * @param consumer action performed for each metric name and metric
+     */
+    default void forEachMetric(BiConsumer<MetricName, Metric> consumer) {
+        getMetrics().forEach(consumer);
+    }
 }
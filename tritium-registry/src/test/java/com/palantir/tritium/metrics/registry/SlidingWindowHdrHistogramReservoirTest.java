@@ -0,0 +1,114 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.tritium.metrics.registry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.codahale.metrics.Snapshot;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public final class SlidingWindowHdrHistogramReservoirTest {
+
+    private final StripedMeterTest.TestClock clock = new StripedMeterTest.TestClock();
+    private final SlidingWindowHdrHistogramReservoir reservoir =
+            new SlidingWindowHdrHistogramReservoir(10, TimeUnit.SECONDS, 10, clock);
+
+    @Test
+    public void testEmpty() {
+        Snapshot snapshot = reservoir.getSnapshot();
+
+        assertThat(reservoir.size()).isZero();
+        assertThat(snapshot.getValues()).isEmpty();
+        assertThat(snapshot.getMin()).isZero();
+        assertThat(snapshot.getMax()).isZero();
+        assertThat(snapshot.getMean()).isZero();
+    }
+
+    @Test
+    public void testSnapshot() {
+        for (int i = 1; i <= 100; i++) {
+            reservoir.update(i);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(100);
+        assertThat(snapshot.getValues()).hasSize(100).startsWith(1, 2, 3).endsWith(99, 100);
+        assertThat(snapshot.getMin()).isEqualTo(1);
+        assertThat(snapshot.getMax()).isEqualTo(100);
+        assertThat(snapshot.getMedian()).isEqualTo(50);
+        assertThat(snapshot.get99thPercentile()).isEqualTo(99);
+        assertThat(snapshot.getMean()).isEqualTo(50.5);
+    }
+
+    @Test
+    public void testNegativeValuesRecordedAsZero() {
+        reservoir.update(-5);
+
+        assertThat(reservoir.size()).isEqualTo(1);
+        assertThat(reservoir.getSnapshot().getMin()).isZero();
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        reservoir.update(1);
+        clock.advance(TimeUnit.SECONDS.toNanos(5));
+        reservoir.update(2);
+        assertThat(reservoir.getSnapshot().getValues()).containsExactly(1, 2);
+
+        clock.advance(TimeUnit.SECONDS.toNanos(6));
+        assertThat(reservoir.getSnapshot().getValues()).containsExactly(2);
+
+        clock.advance(TimeUnit.SECONDS.toNanos(5));
+        assertThat(reservoir.getSnapshot().getValues()).isEmpty();
+    }
+
+    @Test
+    public void testBucketsAreReused() {
+        for (int i = 0; i < 100; i++) {
+            reservoir.update(i);
+            clock.advance(TimeUnit.SECONDS.toNanos(1));
+        }
+
+        assertThat(reservoir.getSnapshot().getValues()).containsExactly(90, 91, 92, 93, 94, 95, 96, 97, 98, 99);
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    reservoir.update(j);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(reservoir.size()).isEqualTo(80_000);
+    }
+
+    @Test
+    public void testInvalidQuantile() {
+        assertThatThrownBy(() -> reservoir.getSnapshot().getValue(1.5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
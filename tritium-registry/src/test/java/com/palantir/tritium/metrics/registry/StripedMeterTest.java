@@ -0,0 +1,110 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.metrics.registry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Meter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public final class StripedMeterTest {
+
+    private final TestClock clock = new TestClock();
+    private final StripedMeter striped = new StripedMeter(clock);
+    private final Meter reference = new Meter(clock);
+
+    @Test
+    public void testInitialState() {
+        assertThat(striped.getCount()).isZero();
+        assertThat(striped.getMeanRate()).isZero();
+        assertThat(striped.getOneMinuteRate()).isZero();
+        assertThat(striped.getFiveMinuteRate()).isZero();
+        assertThat(striped.getFifteenMinuteRate()).isZero();
+    }
+
+    @Test
+    public void testMatchesMeterRates() {
+        for (int i = 0; i < 20; i++) {
+            mark(i * 10);
+            clock.advance(TimeUnit.SECONDS.toNanos(5) + 1);
+            assertRatesMatch();
+        }
+        clock.advance(TimeUnit.MINUTES.toNanos(3));
+        assertRatesMatch();
+    }
+
+    @Test
+    public void testSteadyRateReadEveryMinute() {
+        for (int minute = 0; minute < 5; minute++) {
+            for (int second = 0; second < 60; second++) {
+                striped.mark(100);
+                clock.advance(TimeUnit.SECONDS.toNanos(1));
+            }
+            assertThat(striped.getOneMinuteRate()).isCloseTo(100.0, within(1.0));
+        }
+        assertThat(striped.getFiveMinuteRate()).isCloseTo(100.0, within(1.0));
+        assertThat(striped.getFifteenMinuteRate()).isCloseTo(100.0, within(1.0));
+    }
+
+    @Test
+    public void testConcurrentMarks() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    striped.mark();
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(striped.getCount()).isEqualTo(80_000);
+    }
+
+    private void mark(long count) {
+        striped.mark(count);
+        reference.mark(count);
+    }
+
+    private void assertRatesMatch() {
+        assertThat(striped.getCount()).isEqualTo(reference.getCount());
+        assertThat(striped.getMeanRate()).isCloseTo(reference.getMeanRate(), within(1e-9));
+        assertThat(striped.getOneMinuteRate()).isCloseTo(reference.getOneMinuteRate(), within(1e-9));
+        assertThat(striped.getFiveMinuteRate()).isCloseTo(reference.getFiveMinuteRate(), within(1e-9));
+        assertThat(striped.getFifteenMinuteRate()).isCloseTo(reference.getFifteenMinuteRate(), within(1e-9));
+    }
+
+    static final class TestClock extends Clock {
+        private long tick;
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+
+        void advance(long nanos) {
+            tick += nanos;
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.palantir.tritium.metrics.registry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public final class StripedTimerTest {
+
+    private final StripedMeterTest.TestClock clock = new StripedMeterTest.TestClock();
+    private final StripedTimer timer = new StripedTimer(new UniformReservoir(), clock);
+
+    @Test
+    public void testUpdate() {
+        timer.update(1, TimeUnit.MILLISECONDS);
+        timer.update(3, TimeUnit.MILLISECONDS);
+        timer.update(-1, TimeUnit.MILLISECONDS);
+
+        assertThat(timer.getCount()).isEqualTo(2);
+        assertThat(timer.getSnapshot().getMin()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(timer.getSnapshot().getMax()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(3));
+    }
+
+    @Test
+    public void testTimeCallable() throws Exception {
+        String result = timer.time(() -> {
+            clock.advance(42);
+            return "result";
+        });
+
+        assertThat(result).isEqualTo("result");
+        assertThat(timer.getCount()).isEqualTo(1);
+        assertThat(timer.getSnapshot().getMax()).isEqualTo(42);
+    }
+
+    @Test
+    public void testTimeRunnable() {
+        timer.time(() -> clock.advance(7));
+
+        assertThat(timer.getCount()).isEqualTo(1);
+        assertThat(timer.getSnapshot().getMax()).isEqualTo(7);
+    }
+
+    @Test
+    public void testContext() {
+        try (Timer.Context context = timer.time()) {
+            clock.advance(11);
+        }
+
+        assertThat(timer.getCount()).isEqualTo(1);
+        assertThat(timer.getSnapshot().getMax()).isEqualTo(11);
+    }
+
+    @Test
+    public void testRates() {
+        timer.update(1, TimeUnit.MILLISECONDS);
+        clock.advance(TimeUnit.SECONDS.toNanos(5) + 1);
+
+        assertThat(timer.getMeanRate()).isGreaterThan(0);
+        assertThat(timer.getOneMinuteRate()).isEqualTo(0.2);
+        assertThat(timer.getFiveMinuteRate()).isEqualTo(0.2);
+        assertThat(timer.getFifteenMinuteRate()).isEqualTo(0.2);
+    }
+
+    @Test
+    public void testOverridesTimerMethods() throws Exception {
+        // methods recording into or reading from the superclass's meter and histogram must all be overridden
+        for (Method method : Timer.class.getDeclaredMethods()) {
+            int modifiers = method.getModifiers();
+            // time() returns a context which records through update(long, TimeUnit)
+            boolean context = method.getName().equals("time") && method.getParameterCount() == 0;
+            if (Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers) && !method.isSynthetic() && !context) {
+                assertThat(StripedTimer.class.getDeclaredMethod(method.getName(), method.getParameterTypes()))
+                        .isNotNull();
+            }
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ package com.palantir.tritium.metrics.registry;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
@@ -30,6 +31,10 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
@@ -49,7 +54,8 @@ public final class TaggedMetricRegistryTest {
     public static Iterable<Supplier<Object>> data() {
         return ImmutableList.of(
                 DefaultTaggedMetricRegistry::new,
-                () -> new SlidingWindowTaggedMetricRegistry(30, TimeUnit.SECONDS)
+                () -> new SlidingWindowTaggedMetricRegistry(30, TimeUnit.SECONDS),
+                () -> new HdrSlidingWindowTaggedMetricRegistry(30, TimeUnit.SECONDS)
         );
     }
 
@@ -135,6 +141,7 @@ public final class TaggedMetricRegistryTest {
     @Test
     public void testMeter() {
         testNonsuppliedCall(registry::meter);
+        assertThat(registry.meter(METRIC_1)).isInstanceOf(StripedMeter.class);
     }
 
     @Test
@@ -145,6 +152,7 @@ public final class TaggedMetricRegistryTest {
     @Test
     public void testTimer() {
         testNonsuppliedCall(registry::timer);
+        assertThat(registry.timer(METRIC_1)).isInstanceOf(StripedTimer.class);
     }
 
     @Test
@@ -215,6 +223,27 @@ public final class TaggedMetricRegistryTest {
         assertThat(registry.getMetrics()).isEmpty();
     }
 
+    @Test
+    public void testForEachMetric() {
+        Counter counter = registry.counter(METRIC_1);
+        TaggedMetricRegistry child = registrySupplier.get();
+        Meter meter = child.meter(METRIC_2);
+        registry.addMetrics("tagKey", "tagValue", child);
+
+        Map<MetricName, Metric> visited = new HashMap<>();
+        registry.forEachMetric(visited::put);
+
+        MetricName taggedName = MetricName.builder().from(METRIC_2).putSafeTags("tagKey", "tagValue").build();
+        assertThat(visited)
+                .containsOnly(entry(METRIC_1, counter), entry(taggedName, meter))
+                .isEqualTo(registry.getMetrics());
+
+        Map<MetricName, Metric> visitedAgain = new HashMap<>();
+        registry.forEachMetric(visitedAgain::put);
+        assertThat(Iterables.getOnlyElement(Maps.filterValues(visitedAgain, meter::equals).keySet()))
+                .isSameAs(Iterables.getOnlyElement(Maps.filterValues(visited, meter::equals).keySet()));
+    }
+
     private void assertMetric(String name, String tagKey, String tagValue, Meter meter) {
         assertThat(registry.getMetrics())
                 .containsEntry(MetricName.builder().safeName(name).putSafeTags(tagKey, tagValue).build(), meter);
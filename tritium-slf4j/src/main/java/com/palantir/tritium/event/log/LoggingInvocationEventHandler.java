@@ -18,17 +18,21 @@ package com.palantir.tritium.event.log;
 
 import static com.palantir.logsafe.Preconditions.checkNotNull;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.palantir.logsafe.Arg;
 import com.palantir.logsafe.SafeArg;
 import com.palantir.tritium.api.functions.BooleanSupplier;
 import com.palantir.tritium.event.AbstractInvocationEventHandler;
 import com.palantir.tritium.event.DefaultInvocationContext;
+import com.palantir.tritium.event.InvocationArguments;
 import com.palantir.tritium.event.InvocationContext;
 import com.palantir.tritium.event.InvocationEventHandler;
 import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -57,6 +61,7 @@ public class LoggingInvocationEventHandler extends AbstractInvocationEventHandle
     private final Logger logger;
     private final LoggingLevel level;
     private final java.util.function.LongPredicate durationPredicate;
+    private final ConcurrentMap<Method, MethodTemplate> templates = new ConcurrentHashMap<>();
 
     public LoggingInvocationEventHandler(Logger logger, LoggingLevel level) {
         this(logger, level, (java.util.function.LongPredicate) LOG_ALL_DURATIONS);
@@ -111,7 +116,8 @@ public class LoggingInvocationEventHandler extends AbstractInvocationEventHandle
     private void logInvocation(Method method, @Nullable Object[] nullableArgs, long durationNanos) {
         if (isEnabled() && durationPredicate.test(durationNanos)) {
             Object[] args = nullToEmpty(nullableArgs);
-            log(getMessagePattern(args), getLogParams(method, args, durationNanos, level));
+            MethodTemplate template = template(method);
+            log(template.getMessagePattern(args), template.getLogParams(args, durationNanos, level));
         }
     }
 
@@ -171,11 +177,8 @@ public class LoggingInvocationEventHandler extends AbstractInvocationEventHandle
     private static BooleanSupplier createEnabledSupplier(Logger logger, LoggingLevel level) {
         checkNotNull(logger, "logger");
         checkNotNull(level, "level");
-        if (getSystemPropertySupplier(LoggingInvocationEventHandler.class).getAsBoolean()) {
-            return () -> isEnabled(logger, level);
-        } else {
-            return BooleanSupplier.FALSE;
-        }
+        BooleanSupplier instrumentationEnabled = getSystemPropertySupplier(LoggingInvocationEventHandler.class);
+        return () -> instrumentationEnabled.getAsBoolean() && isEnabled(logger, level);
     }
 
     private static List<String> generateMessagePatterns(int maxArgCount) {
@@ -207,31 +210,97 @@ public class LoggingInvocationEventHandler extends AbstractInvocationEventHandle
         return generateMessagePattern(args.length);
     }
 
+    /**
+     * Returns the log arguments for an invocation, building the method's template each time. Handlers log through
+     * their per-method template cache instead, so this is only for tests.
+     */
+    @VisibleForTesting
     static Object[] getLogParams(Method method, Object[] args, long durationNanos, LoggingLevel level) {
-        Arg[] logParams = new Arg[3 + args.length];
-        logParams[0] = SafeArg.of("class", method.getDeclaringClass().getSimpleName());
-        logParams[1] = SafeArg.of("method", method.getName());
-        logParams[logParams.length - 1] = SafeArg.of("milliseconds", String.format("%.3f", durationNanos / 1000000.0d));
+        return new MethodTemplate(method).getLogParams(args, durationNanos, level);
+    }
 
-        Class<?>[] argTypes = method.getParameterTypes();
-        if (argTypes.length == 0) {
-            return logParams;
+    /**
+     * Formats a duration in nanoseconds as milliseconds with three decimal places, rounding half up, equivalent to
+     * {@code String.format("%.3f", durationNanos / 1000000.0d)} without the intermediate formatter and boxing.
+     */
+    static String formatMillis(long durationNanos) {
+        if (durationNanos < 0) {
+            return "-" + formatMillis(durationNanos == Long.MIN_VALUE ? Long.MAX_VALUE : -durationNanos);
         }
+        long micros = (durationNanos / 1000) + ((durationNanos % 1000) >= 500 ? 1 : 0);
+        long millis = micros / 1000;
+        int fraction = (int) (micros % 1000);
 
-        for (int i = 0; i < argTypes.length; i++) {
-            String argMessage = argTypes[i].getSimpleName();
-            if (level == LoggingLevel.TRACE && i < args.length) {
-                Object arg = args[i];
-                if (arg instanceof Collection) {
-                    argMessage = argMessage + "[" + ((Collection<?>) arg).size() + "]";
-                }
+        int integerDigits = 1;
+        for (long remaining = millis / 10; remaining > 0; remaining /= 10) {
+            integerDigits++;
+        }
+        char[] chars = new char[integerDigits + 4];
+        chars[integerDigits] = '.';
+        chars[integerDigits + 1] = (char) ('0' + fraction / 100);
+        chars[integerDigits + 2] = (char) ('0' + (fraction / 10) % 10);
+        chars[integerDigits + 3] = (char) ('0' + fraction % 10);
+        long remaining = millis;
+        for (int i = integerDigits - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + (remaining % 10));
+            remaining /= 10;
+        }
+        return new String(chars);
+    }
+
+    private MethodTemplate template(Method method) {
+        MethodTemplate template = templates.get(method);
+        if (template == null) {
+            template = templates.computeIfAbsent(method, MethodTemplate::new);
+        }
+        return template;
+    }
+
+    /** Log message pattern and arguments computed once per method. */
+    private static final class MethodTemplate {
+        private final String messagePattern;
+        private final Arg<String> classArg;
+        private final Arg<String> methodArg;
+        private final String[] typeKeys;
+        private final String[] typeNames;
+        private final Arg<?>[] typeArgs;
+
+        MethodTemplate(Method method) {
+            Class<?>[] argTypes = method.getParameterTypes();
+            this.messagePattern = LoggingInvocationEventHandler.getMessagePattern(new Object[argTypes.length]);
+            this.classArg = SafeArg.of("class", method.getDeclaringClass().getSimpleName());
+            this.methodArg = SafeArg.of("method", method.getName());
+            this.typeKeys = new String[argTypes.length];
+            this.typeNames = new String[argTypes.length];
+            this.typeArgs = new Arg<?>[argTypes.length];
+            for (int i = 0; i < argTypes.length; i++) {
+                typeKeys[i] = "type" + i;
+                typeNames[i] = argTypes[i].getSimpleName();
+                typeArgs[i] = SafeArg.of(typeKeys[i], typeNames[i]);
             }
+        }
 
-            //noinspection ObjectAllocationInLoop - storing allocated arg in array
-            logParams[2 + i] = SafeArg.of("type" + i, argMessage);
+        String getMessagePattern(Object[] args) {
+            return args.length == typeArgs.length ? messagePattern : LoggingInvocationEventHandler.getMessagePattern(args);
         }
 
-        return logParams;
+        Object[] getLogParams(Object[] args, long durationNanos, LoggingLevel level) {
+            Object[] logParams = new Object[3 + args.length];
+            logParams[0] = classArg;
+            logParams[1] = methodArg;
+            logParams[logParams.length - 1] = SafeArg.of("milliseconds", formatMillis(durationNanos));
+
+            int typeCount = Math.min(typeArgs.length, args.length);
+            for (int i = 0; i < typeCount; i++) {
+                Object arg = args[i];
+                if (level == LoggingLevel.TRACE && arg instanceof Collection) {
+                    logParams[2 + i] = SafeArg.of(typeKeys[i], InvocationArguments.describe(typeNames[i], arg));
+                } else {
+                    logParams[2 + i] = typeArgs[i];
+                }
+            }
+            return logParams;
+        }
     }
 
 }
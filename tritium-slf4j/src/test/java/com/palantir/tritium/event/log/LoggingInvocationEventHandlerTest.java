@@ -153,6 +153,29 @@ public class LoggingInvocationEventHandlerTest {
         assertThat(logMessage).startsWith("TestInterface.bulk(Set[2]) took 1.235ms");
     }
 
+    @Test
+    public void testFormatMillis() {
+        for (long nanos : new long[] {0, 1, 499, 999, 1000, 1234567, 999_999_499, 999_999_501, 123_456_789_012L}) {
+            assertThat(LoggingInvocationEventHandler.formatMillis(nanos))
+                    .isEqualTo(String.format("%.3f", nanos / 1000000.0d));
+        }
+        assertThat(LoggingInvocationEventHandler.formatMillis(500)).isEqualTo("0.001");
+        assertThat(LoggingInvocationEventHandler.formatMillis(999_999_500)).isEqualTo("1000.000");
+        assertThat(LoggingInvocationEventHandler.formatMillis(-1234567)).isEqualTo("-1.235");
+    }
+
+    @Test
+    @SuppressWarnings("checkstyle:illegalthrows")
+    public void testGenerateMessageWithoutCollectionSizes() throws Throwable {
+        Method method = TestInterface.class.getDeclaredMethod("multiArgumentMethod",
+                String.class, int.class, Collection.class);
+        Object[] args = {"arg0", 1, ImmutableList.of("a")};
+
+        Object[] first = LoggingInvocationEventHandler.getLogParams(method, args, 1L, LoggingLevel.DEBUG);
+        assertThat(MessageFormatter.arrayFormat(LoggingInvocationEventHandler.getMessagePattern(args), first)
+                .getMessage()).isEqualTo("TestInterface.multiArgumentMethod(String, int, Collection) took 0.000ms");
+    }
+
     @Test
     public void testGetMessagePattern() {
         for (int i = 0; i < 20; i++) {
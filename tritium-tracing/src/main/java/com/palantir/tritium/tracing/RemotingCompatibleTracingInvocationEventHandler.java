@@ -21,10 +21,10 @@ import static com.palantir.logsafe.Preconditions.checkNotNull;
 import com.google.common.base.Strings;
 import com.palantir.logsafe.SafeArg;
 import com.palantir.tritium.event.AbstractInvocationEventHandler;
-import com.palantir.tritium.event.DefaultInvocationContext;
 import com.palantir.tritium.event.InstrumentationProperties;
 import com.palantir.tritium.event.InvocationContext;
 import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.event.PooledInvocationContext;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Objects;
@@ -53,7 +53,7 @@ public final class RemotingCompatibleTracingInvocationEventHandler
 
     @Override
     public InvocationContext preInvocation(@Nonnull Object instance, @Nonnull Method method, @Nonnull Object[] args) {
-        InvocationContext context = DefaultInvocationContext.of(instance, method, args);
+        InvocationContext context = PooledInvocationContext.withoutArgs(instance, method);
         String operationName = getOperationName(method);
         tracer.startSpan(operationName);
         return context;
@@ -68,6 +68,7 @@ public final class RemotingCompatibleTracingInvocationEventHandler
         debugIfNullContext(context);
         if (context != null) {
             tracer.completeSpan();
+            PooledInvocationContext.release(context);
         }
     }
 
@@ -76,6 +77,7 @@ public final class RemotingCompatibleTracingInvocationEventHandler
         debugIfNullContext(context);
         if (context != null) {
             tracer.completeSpan();
+            PooledInvocationContext.release(context);
         }
     }
 
@@ -22,10 +22,10 @@ import com.google.common.base.Strings;
 import com.palantir.tracing.Tracer;
 import com.palantir.tritium.api.functions.BooleanSupplier;
 import com.palantir.tritium.event.AbstractInvocationEventHandler;
-import com.palantir.tritium.event.DefaultInvocationContext;
 import com.palantir.tritium.event.InstrumentationProperties;
 import com.palantir.tritium.event.InvocationContext;
 import com.palantir.tritium.event.InvocationEventHandler;
+import com.palantir.tritium.event.PooledInvocationContext;
 import java.lang.reflect.Method;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -61,7 +61,7 @@ public final class TracingInvocationEventHandler extends AbstractInvocationEvent
 
     @Override
     public InvocationContext preInvocation(@Nonnull Object instance, @Nonnull Method method, @Nonnull Object[] args) {
-        InvocationContext context = DefaultInvocationContext.of(instance, method, args);
+        InvocationContext context = PooledInvocationContext.withoutArgs(instance, method);
         String operationName = getOperationName(method);
         Tracer.startSpan(operationName);
         return context;
@@ -86,6 +86,7 @@ public final class TracingInvocationEventHandler extends AbstractInvocationEvent
         // Context is null if no span was created, in which case the existing span should not be completed
         if (context != null) {
             Tracer.fastCompleteSpan();
+            PooledInvocationContext.release(context);
         }
     }
 